@@ -0,0 +1,148 @@
+// one bit per map cell, stored row by row in 64 bit words; all neighbour lookups wrap
+// around the edges like the map does
+public class BitBoard {
+    public final int width, height;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    public BitBoard(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.words = new long[wordsPerRow * height];
+    }
+
+    public boolean get(int x, int y) {
+        return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    public void set(int x, int y) {
+        words[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+    }
+
+    public BitBoard and(BitBoard other) {
+        BitBoard result = new BitBoard(width, height);
+        for (int i = 0; i < words.length; i++) {
+            result.words[i] = words[i] & other.words[i];
+        }
+        return result;
+    }
+
+    public BitBoard or(BitBoard other) {
+        BitBoard result = new BitBoard(width, height);
+        for (int i = 0; i < words.length; i++) {
+            result.words[i] = words[i] | other.words[i];
+        }
+        return result;
+    }
+
+    public BitBoard andNot(BitBoard other) {
+        BitBoard result = new BitBoard(width, height);
+        for (int i = 0; i < words.length; i++) {
+            result.words[i] = words[i] & ~other.words[i];
+        }
+        return result;
+    }
+
+    // bit (x, y) of the result is the bit of the neighbour of (x, y) in the given direction
+    public BitBoard neighbour(Direction direction) {
+        BitBoard result = new BitBoard(width, height);
+        switch (direction) {
+            case STILL:
+                System.arraycopy(words, 0, result.words, 0, words.length);
+                break;
+            case NORTH:
+                System.arraycopy(words, 0, result.words, wordsPerRow, words.length - wordsPerRow);
+                System.arraycopy(words, words.length - wordsPerRow, result.words, 0, wordsPerRow);
+                break;
+            case SOUTH:
+                System.arraycopy(words, wordsPerRow, result.words, 0, words.length - wordsPerRow);
+                System.arraycopy(words, 0, result.words, words.length - wordsPerRow, wordsPerRow);
+                break;
+            case EAST:
+                for (int y = 0; y < height; y++) {
+                    shiftRowEast(y * wordsPerRow, result.words);
+                }
+                break;
+            case WEST:
+                for (int y = 0; y < height; y++) {
+                    shiftRowWest(y * wordsPerRow, result.words);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown direction %s encountered", direction));
+        }
+        return result;
+    }
+
+    // cells with at least one set neighbour among the four cardinal directions
+    public BitBoard adjacent() {
+        return neighbour(Direction.NORTH).or(neighbour(Direction.EAST))
+                .or(neighbour(Direction.SOUTH)).or(neighbour(Direction.WEST));
+    }
+
+    // cells whose four cardinal neighbours are all set
+    public BitBoard surrounded() {
+        return neighbour(Direction.NORTH).and(neighbour(Direction.EAST))
+                .and(neighbour(Direction.SOUTH)).and(neighbour(Direction.WEST));
+    }
+
+    // index (y * width + x) of the first set cell at or after the given index, -1 if there is none;
+    // iterate with: for (int i = board.next(0); i >= 0; i = board.next(i + 1))
+    public int next(int fromIndex) {
+        if (fromIndex >= width * height) {
+            return -1;
+        }
+        int y = fromIndex / width;
+        int x = fromIndex % width;
+        int w = x >>> 6;
+        long word = words[y * wordsPerRow + w] & (-1L << x);
+
+        while (true) {
+            if (word != 0) {
+                return y * width + (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == wordsPerRow) {
+                w = 0;
+                if (++y == height) {
+                    return -1;
+                }
+            }
+            word = words[y * wordsPerRow + w];
+        }
+    }
+
+    public int count() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    // result bit x is bit x + 1, the last bit wraps around to bit 0
+    private void shiftRowEast(int row, long[] target) {
+        for (int w = 0; w < wordsPerRow; w++) {
+            long next = w + 1 < wordsPerRow ? words[row + w + 1] << 63 : 0;
+            target[row + w] = (words[row + w] >>> 1) | next;
+        }
+        if ((words[row] & 1L) != 0) {
+            target[row + ((width - 1) >>> 6)] |= 1L << (width - 1);
+        }
+    }
+
+    // result bit x is bit x - 1, bit 0 wraps around from the last bit
+    private void shiftRowWest(int row, long[] target) {
+        for (int w = 0; w < wordsPerRow; w++) {
+            long previous = w > 0 ? words[row + w - 1] >>> 63 : 0;
+            target[row + w] = (words[row + w] << 1) | previous;
+        }
+        // the last bit moved into the padding and has to be cleared
+        if ((width & 63) != 0) {
+            target[row + wordsPerRow - 1] &= ~(1L << width);
+        }
+        if ((words[row + ((width - 1) >>> 6)] & (1L << (width - 1))) != 0) {
+            target[row] |= 1L;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+// a bot started as a child process, spoken to with the same line protocol the halite
+// environment uses; the bot's input and output are moved through non-blocking pipes so a match
+// can wait on all of its bots with one selector and give up on a bot that stops reading; a command
+// "unix:<path>" plays against a BotHost listening on that socket instead of starting a process
+public class BotConnection {
+    public static final String UNIX_PREFIX = "unix:";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // the bot's process, or null for a hosted bot
+    private final Process process;
+    private final SelectableChannel inputChannel;
+    private final WritableByteChannel input;
+    private final SelectableChannel channel;
+    private final ReadableByteChannel output;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final StringBuilder partialLine = new StringBuilder();
+    private final Queue<String> lines = new ArrayDeque<>();
+    // waits out a full input buffer, opened on the first write that does not go through at once
+    private Selector writable;
+    private boolean closed;
+
+    private <W extends SelectableChannel & WritableByteChannel, C extends SelectableChannel & ReadableByteChannel>
+            BotConnection(Process process, W input, C output) throws IOException {
+        this.process = process;
+        this.inputChannel = input;
+        this.input = input;
+        this.channel = output;
+        this.output = output;
+        this.inputChannel.configureBlocking(false);
+        this.channel.configureBlocking(false);
+    }
+
+    public static BotConnection start(String command) throws IOException {
+        if (command.startsWith(UNIX_PREFIX)) {
+            return connect(command.substring(UNIX_PREFIX.length()));
+        }
+        Process process = new ProcessBuilder("/bin/sh", "-c", command)
+                .redirectErrorStream(true)
+                .start();
+        Pipe inputPipe = Pipe.open();
+        Pipe outputPipe = Pipe.open();
+
+        // a process' streams can not be selected on, so they are pumped to and from the pipes; only
+        // the feed blocks on a bot that does not read, the match sees the input pipe fill up
+        Thread feed = new Thread(() -> {
+            try (Pipe.SourceChannel source = inputPipe.source(); OutputStream out = process.getOutputStream()) {
+                ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE);
+                while (source.read(chunk) >= 0) {
+                    out.write(chunk.array(), 0, chunk.position());
+                    out.flush();
+                    chunk.clear();
+                }
+            } catch (IOException e) {
+                // the bot is gone or was killed while we wrote to it
+            }
+        }, "bot-feed-" + process.pid());
+        feed.setDaemon(true);
+        feed.start();
+
+        Thread pump = new Thread(() -> {
+            try (InputStream in = process.getInputStream(); Pipe.SinkChannel sink = outputPipe.sink()) {
+                byte[] bytes = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(bytes)) >= 0) {
+                    ByteBuffer chunk = ByteBuffer.wrap(bytes, 0, read);
+                    while (chunk.hasRemaining()) {
+                        sink.write(chunk);
+                    }
+                }
+            } catch (IOException e) {
+                // the bot is gone, the closed sink tells the match
+            }
+        }, "bot-pump-" + process.pid());
+        pump.setDaemon(true);
+        pump.start();
+
+        return new BotConnection(process, inputPipe.sink(), outputPipe.source());
+    }
+
+    private static BotConnection connect(String path) throws IOException {
+        SocketChannel socket = SocketChannel.open(StandardProtocolFamily.UNIX);
+        socket.connect(UnixDomainSocketAddress.of(Paths.get(path)));
+        return new BotConnection(null, socket, socket);
+    }
+
+    public SelectableChannel channel() {
+        return channel;
+    }
+
+    // sends a line, failing once the deadline of System.nanoTime() passes while the bot is not
+    // reading; Long.MAX_VALUE waits for as long as it takes
+    public void sendString(String message, long deadline) throws IOException {
+        ByteBuffer chunk = ByteBuffer.wrap((message + '\n').getBytes());
+        while (chunk.hasRemaining()) {
+            if (input.write(chunk) == 0) {
+                awaitWritable(deadline);
+            }
+        }
+    }
+
+    private void awaitWritable(long deadline) throws IOException {
+        if (writable == null) {
+            writable = Selector.open();
+            inputChannel.register(writable, SelectionKey.OP_WRITE);
+        }
+        long left = deadline == Long.MAX_VALUE ? 0 : (deadline - System.nanoTime()) / 1_000_000L;
+        if (deadline != Long.MAX_VALUE && left <= 0) {
+            throw new InterruptedIOException("The bot did not read its input in time");
+        }
+        writable.select(left);
+        writable.selectedKeys().clear();
+    }
+
+    // reads whatever the bot has written so far; returns false once its output is closed
+    public boolean readAvailable() throws IOException {
+        int read;
+        while ((read = output.read(buffer)) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                char c = (char) buffer.get();
+                if (c == '\n') {
+                    // a carriage return is removed for bots running on windows line endings
+                    int length = partialLine.length();
+                    if (length > 0 && partialLine.charAt(length - 1) == '\r') {
+                        partialLine.setLength(length - 1);
+                    }
+                    lines.add(partialLine.toString());
+                    partialLine.setLength(0);
+                } else {
+                    partialLine.append(c);
+                }
+            }
+            buffer.clear();
+        }
+        if (read < 0) {
+            closed = true;
+        }
+        return !closed;
+    }
+
+    // next complete line received from the bot, null if there is none yet
+    public String pollLine() {
+        return lines.poll();
+    }
+
+    // whatever the bot wrote that was not consumed as a reply, used for the logs
+    public String drainOutput() {
+        StringBuilder builder = new StringBuilder();
+        while (!lines.isEmpty()) {
+            builder.append(lines.poll()).append('\n');
+        }
+        return builder.append(partialLine).toString();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void kill() {
+        // closing a hosted bot's socket ends its game on the host
+        if (process != null) {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+        try {
+            if (writable != null) {
+                writable.close();
+            }
+            input.close();
+        } catch (IOException e) {
+            // the bot stopped reading, nothing to flush to
+        }
+        try {
+            output.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+        closed = true;
+    }
+}
@@ -1,14 +1,110 @@
 import java.util.List;
 
 public class BotExecutor {
-    private final GameStrategy gameStrategy;
+    // part of the 1500 ms frame limit we plan for, the rest covers reading the frame, gc pauses and noise
+    private static final long TURN_BUDGET_NANOS = 1_000_000_000L;
+    // a more detailed variant is only taken back when it fits this share of the budget, so we do not
+    // switch back and forth on every turn close to the limit
+    private static final double RETURN_SHARE = 0.8;
+    // the first turns a strategy plays mostly measure the jit, they are kept out of the cost model
+    private static final int WARMUP_TURNS = 3;
+    // the variant one step more detailed than the chosen one is measured again once its estimate is
+    // this many turns old, as long as the chosen one takes at most this share of the budget; it would
+    // have to be several times slower to miss the frame limit
+    private static final int STALE_TURNS = 20;
+    private static final double PROBE_SHARE = 0.25;
 
-    public BotExecutor(GameStrategy gameStrategy) {
-        this.gameStrategy = gameStrategy;
+    private final Networking networking;
+    // strategy variants from the most detailed to the cheapest
+    private final GameStrategy[] gameStrategies;
+    private final FrameSpeculator frameSpeculator;
+    private final CostModel costModel;
+    private int variant;
+    // turns computed by a strategy, book turns not counted, and the last of them each variant was measured on
+    private int liveTurns;
+    private final int[] lastMeasured;
+    // locations on the map, and owned and frontier locations as of the last turn
+    private int cells, units;
+    // book line played from our start until the game leaves it, null after that
+    private OpeningBook.Line opening;
+    private Location openingStart;
+
+    public BotExecutor(Networking networking, GameStrategy... gameStrategies) {
+        this.networking = networking;
+        this.gameStrategies = gameStrategies;
+        this.frameSpeculator = new FrameSpeculator();
+        this.costModel = new CostModel(gameStrategies.length);
+        this.lastMeasured = new int[gameStrategies.length];
+    }
+
+    public void setOpening(OpeningBook.Line opening, Location start) {
+        this.opening = opening;
+        this.openingStart = start;
     }
 
     public void run(GameContext gameContext) {
+        gameContext.turn++;
+        if (opening != null) {
+            List<Move> bookMoves = opening.movesFor(gameContext.gameMap, gameContext.myID, openingStart, gameContext.turn - 1);
+            // a book turn runs no variant, so it is neither measured nor counted as one of the live turns
+            if (bookMoves != null) {
+                networking.sendFrame(bookMoves);
+                return;
+            }
+            // out of book, the live strategy takes over from here on
+            opening = null;
+        }
+        liveTurns++;
+        cells = gameContext.gameMap.width * gameContext.gameMap.height;
+        variant = selectVariant();
+        GameStrategy gameStrategy = gameStrategies[variant];
+
+        long start = System.nanoTime();
+        gameStrategy.setPrecomputed(frameSpeculator.collect(gameContext.gameMap));
+        long patched = System.nanoTime();
         List<Move> moves = gameStrategy.computeBestMoves(gameContext);
-        Networking.sendFrame(moves);
+        long computed = System.nanoTime();
+        networking.sendFrame(moves);
+        // prepare the next turn while the other bots are thinking, this is not part of the turn's cost
+        frameSpeculator.speculate(gameStrategy, gameContext, moves);
+
+        if (gameStrategy.ownerMasks != null) {
+            units = gameStrategy.ownerMasks.mine.count() + gameStrategy.ownerMasks.frontier.count();
+        }
+        if (liveTurns > WARMUP_TURNS) {
+            costModel.record(variant, CostModel.Phase.PATCH, patched - start, cells, units);
+            costModel.record(variant, CostModel.Phase.MOVES, computed - patched, cells, units);
+            lastMeasured[variant] = liveTurns;
+        }
+    }
+
+    // stops the speculation worker once the game is over, a hosted game must not leave it behind
+    public void close() {
+        frameSpeculator.close();
+    }
+
+    // the most detailed variant expected to fit the budget, the cheapest one if none does; until the
+    // most detailed one is measured it is played, as the bot did before it had variants, and its
+    // estimate then bounds the ones of the variants not measured yet
+    private int selectVariant() {
+        if (!costModel.isMeasured(0)) {
+            return 0;
+        }
+        int chosen = gameStrategies.length - 1;
+        for (int v = 0; v < gameStrategies.length - 1; v++) {
+            double budget = v < variant ? RETURN_SHARE * TURN_BUDGET_NANOS : TURN_BUDGET_NANOS;
+            if (costModel.predict(v, cells, units) <= budget) {
+                chosen = v;
+                break;
+            }
+        }
+
+        // a variant that is no longer chosen gets no new samples, so a stale estimate is measured again
+        int probe = chosen - 1;
+        if (probe >= 0 && (!costModel.isMeasured(probe) || liveTurns - lastMeasured[probe] > STALE_TURNS)
+                && costModel.predict(chosen, cells, units) <= PROBE_SHARE * TURN_BUDGET_NANOS) {
+            return probe;
+        }
+        return chosen;
     }
 }
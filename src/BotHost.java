@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// serves many games from one long-lived jvm, so a game does not pay for starting a jvm and plays
+// with code the jit already compiled for the games before it:
+//   java -cp classes BotHost -p bot.sock
+// every connection to the unix domain socket is one game with its own strategies, context and
+// executor; MatchRunner connects with "unix:bot.sock" as the bot command, the halite environment
+// through a relay such as "socat - UNIX-CONNECT:bot.sock"
+public class BotHost {
+    public static final String DEFAULT_PATH = "bot.sock";
+
+    private static final AtomicInteger games = new AtomicInteger();
+
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(DEFAULT_PATH);
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-p") && i + 1 < args.length) {
+                path = Paths.get(args[++i]);
+            } else {
+                System.out.println("Usage: BotHost [-p socket path]");
+                System.exit(1);
+            }
+        }
+
+        // a socket file left behind by an earlier host would fail the bind
+        Files.deleteIfExists(path);
+        ExecutorService executor = newGameExecutor();
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(path));
+            path.toFile().deleteOnExit();
+            System.out.println("Serving games on " + path.toAbsolutePath());
+
+            while (true) {
+                SocketChannel channel = server.accept();
+                int game = games.incrementAndGet();
+                executor.execute(() -> play(channel, game));
+            }
+        }
+    }
+
+    private static void play(SocketChannel channel, int game) {
+        BotV2 bot = new BotV2(Networking.open(channel), BotV2.strategies());
+        try (channel) {
+            bot.gameLoop();
+        } catch (UncheckedIOException e) {
+            // the environment closes the connection once the game is over
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Game " + game + " failed: " + e);
+            e.printStackTrace(System.out);
+        } finally {
+            bot.close();
+        }
+    }
+
+    // a thread per game: virtual threads where the jvm has them (java 21 and later), as a game spends
+    // most of its time waiting for the next frame; platform threads otherwise
+    static ExecutorService newGameExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "game-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -1,22 +1,24 @@
 import java.io.IOException;
 
 public class BotV1 {
+    private final Networking networking = Networking.STDIO;
     private BotExecutor botExecutor;
     private GameContext gameContext;
 
     public BotV1(GameStrategy gameStrategy) {
-        this.botExecutor = new BotExecutor(gameStrategy);
+        this.botExecutor = new BotExecutor(networking, gameStrategy);
     }
 
     public void gameLoop() throws IOException {
 
-        final InitPackage iPackage = Networking.getInit();
+        final InitPackage iPackage = networking.getInit();
         gameContext = new GameContext(iPackage.map, iPackage.myID);
+        botExecutor.setOpening(iPackage.opening, iPackage.start);
 
-        Networking.sendInit("Chess.com");
+        networking.sendInit("Chess.com");
 
         while (true) {
-            Networking.updateFrame(gameContext.gameMap);
+            networking.updateFrame(gameContext.gameMap);
             botExecutor.run(gameContext);
         }
     }
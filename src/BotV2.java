@@ -1,28 +1,48 @@
 import java.io.IOException;
 
 public class BotV2 {
+    private final Networking networking;
     private BotExecutor botExecutor;
     private GameContext gameContext;
 
-    public BotV2(GameStrategy gameStrategy) {
-        this.botExecutor = new BotExecutor(gameStrategy);
+    // strategies from the most detailed to the cheapest, the executor picks the one that fits the time
+    public BotV2(GameStrategy... gameStrategies) {
+        this(Networking.STDIO, gameStrategies);
+    }
+
+    public BotV2(Networking networking, GameStrategy... gameStrategies) {
+        this.networking = networking;
+        this.botExecutor = new BotExecutor(networking, gameStrategies);
     }
 
     public void gameLoop() throws IOException {
 
-        final InitPackage iPackage = Networking.getInit();
+        final InitPackage iPackage = networking.getInit();
         gameContext = new GameContext(iPackage.map, iPackage.myID);
+        botExecutor.setOpening(iPackage.opening, iPackage.start);
 
-        Networking.sendInit("Chess.com");
+        networking.sendInit("Chess.com");
 
         while (true) {
-            Networking.updateFrame(gameContext.gameMap);
+            networking.updateFrame(gameContext.gameMap);
             botExecutor.run(gameContext);
         }
     }
 
+    public void close() {
+        botExecutor.close();
+    }
+
+    // a fresh set for every game, strategies keep per-game state; the most detailed one picks its
+    // radius from the map size, so large maps only get the bounded field even while it is measured
+    // and the first two variants are the same there
+    public static GameStrategy[] strategies() {
+        return new GameStrategy[]{new StageTwoStrategy(),
+                new StageTwoStrategy(StageTwoStrategy.LARGE_MAP_RADIUS), new StageOneStrategy()};
+    }
+
     public static void main(String[] args) throws IOException {
-        BotV2 bot = new BotV2(new StageTwoStrategy());
+        BotV2 bot = new BotV2(strategies());
         bot.gameLoop();
     }
 }  
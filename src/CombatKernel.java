@@ -0,0 +1,166 @@
+import java.util.Arrays;
+
+// resolves single cells of the next frame with the exact rules of the halite environment:
+// pieces landing on the same location merge capped at 255, then every piece damages the
+// pieces of other players on and next to its location and the neutral strength under it;
+// a cell only depends on the moves within two steps, so resolving a region costs O(region)
+public class CombatKernel {
+    private static final int MAX_HALITE = 255;
+    private static final int STILL = Direction.STILL.ordinal();
+    // a cell holds pieces from itself and its four neighbours, so at most five players
+    private static final int MAX_PIECES = 5;
+
+    public final int width, height;
+    private final int[] productions, owners, strengths;
+    // direction of every piece, pieces without a move stay still
+    private final int[] moves;
+
+    // pieces on a location and its four neighbours after moving, by player
+    private final int[][] pieceOwners = new int[MAX_PIECES][MAX_PIECES];
+    private final int[][] pieceStrengths = new int[MAX_PIECES][MAX_PIECES];
+    private final int[] pieceCounts = new int[MAX_PIECES];
+
+    // the frame before the moves, all cells indexed as y * width + x; the arrays are not copied
+    public CombatKernel(int width, int height, int[] productions, int[] owners, int[] strengths) {
+        this.width = width;
+        this.height = height;
+        this.productions = productions;
+        this.owners = owners;
+        this.strengths = strengths;
+        this.moves = new int[width * height];
+    }
+
+    public CombatKernel(MapState state) {
+        this(state.width, state.height, state.productions, state.owners, state.strengths);
+    }
+
+    public CombatKernel(GameMap gameMap) {
+        this(gameMap.snapshot());
+    }
+
+    public void setMove(int cell, Direction direction) {
+        moves[cell] = direction.ordinal();
+    }
+
+    public Direction getMove(int cell) {
+        return Direction.values()[moves[cell]];
+    }
+
+    public void clearMoves() {
+        Arrays.fill(moves, STILL);
+    }
+
+    public int index(Location location) {
+        return location.y * width + location.x;
+    }
+
+    // owner of the cell after the frame is resolved
+    public int predictOwner(int cell) {
+        int[] owner = new int[1];
+        resolve(cell, owner, new int[1], 0);
+        return owner[0];
+    }
+
+    // owner of the cell after the frame, if the piece at from moved in the given direction
+    // instead of its current move
+    public int predictOwner(int from, Direction direction, int cell) {
+        int previous = moves[from];
+        moves[from] = direction.ordinal();
+        int owner = predictOwner(cell);
+        moves[from] = previous;
+        return owner;
+    }
+
+    // writes the owner and strength the cell has after the frame at the given index of the arrays
+    public void resolve(int cell, int[] resultOwners, int[] resultStrengths, int index) {
+        collectPieces(cell, 0);
+        for (int dir = 1; dir < MAX_PIECES; dir++) {
+            collectPieces(neighbour(cell, dir), dir);
+        }
+
+        // the neutral strength left under a piece is only there if nobody owned the location
+        int neutral = owners[cell] == 0 ? strengths[cell] : 0;
+        int neutralDamage = 0;
+
+        for (int k = 0; k < pieceCounts[0]; k++) {
+            int player = pieceOwners[0][k];
+            int piece = pieceStrengths[0][k];
+            boolean injured = false;
+            int damage = 0;
+
+            for (int n = 0; n < MAX_PIECES; n++) {
+                for (int j = 0; j < pieceCounts[n]; j++) {
+                    if (pieceOwners[n][j] != player) {
+                        injured = true;
+                        damage += pieceStrengths[n][j];
+                    }
+                }
+            }
+            if (neutral > 0) {
+                injured = true;
+                damage += neutral;
+                neutralDamage += piece;
+            }
+
+            // a piece that takes at least its own strength is removed, pieces of zero strength included
+            if (!injured || damage < piece) {
+                resultOwners[index] = player;
+                resultStrengths[index] = piece - damage;
+                return;
+            }
+        }
+
+        resultOwners[index] = 0;
+        resultStrengths[index] = Math.max(0, neutral - neutralDamage);
+    }
+
+    // the pieces on a location after all moves, before any damage
+    private void collectPieces(int cell, int slot) {
+        pieceCounts[slot] = 0;
+
+        if (owners[cell] != 0) {
+            // a piece that moves away leaves an empty piece behind
+            int piece = moves[cell] == STILL ? Math.min(MAX_HALITE, strengths[cell] + productions[cell]) : 0;
+            addPiece(slot, owners[cell], piece);
+        }
+        for (int dir = 1; dir < MAX_PIECES; dir++) {
+            int source = neighbour(cell, dir);
+            if (owners[source] != 0 && moves[source] == opposite(dir)) {
+                addPiece(slot, owners[source], strengths[source]);
+            }
+        }
+    }
+
+    private void addPiece(int slot, int player, int strength) {
+        for (int k = 0; k < pieceCounts[slot]; k++) {
+            if (pieceOwners[slot][k] == player) {
+                pieceStrengths[slot][k] = Math.min(MAX_HALITE, pieceStrengths[slot][k] + strength);
+                return;
+            }
+        }
+        pieceOwners[slot][pieceCounts[slot]] = player;
+        pieceStrengths[slot][pieceCounts[slot]] = strength;
+        pieceCounts[slot]++;
+    }
+
+    private int neighbour(int cell, int dir) {
+        int x = cell % width, y = cell / width;
+        switch (dir) {
+            case 1:
+                return (y == 0 ? height - 1 : y - 1) * width + x;
+            case 2:
+                return y * width + (x == width - 1 ? 0 : x + 1);
+            case 3:
+                return (y == height - 1 ? 0 : y + 1) * width + x;
+            case 4:
+                return y * width + (x == 0 ? width - 1 : x - 1);
+            default:
+                return cell;
+        }
+    }
+
+    // NORTH <-> SOUTH and EAST <-> WEST
+    private static int opposite(int dir) {
+        return (dir + 1) % 4 + 1;
+    }
+}
@@ -0,0 +1,78 @@
+// live estimate of how long every phase of a turn takes with each strategy variant, the variants
+// ordered from the most detailed to the cheapest; a phase costs a * cells + b * units nanoseconds,
+// as the fields scan the whole map while the move search grows with the territory, a unit being
+// one owned location or one on our frontier; a and b are fitted by least squares over the recent
+// turns of the variant; only the phases before the moves are sent count, the speculation after
+// that runs while the other bots think
+public class CostModel {
+    public enum Phase {
+        // validating the speculative work against the frame that arrived
+        PATCH,
+        // computing the moves
+        MOVES
+    }
+
+    // weight kept by the older measurements with every new one, about the last ten turns count
+    private static final double FORGETTING = 0.9;
+    // below this the units barely changed over the recent turns and the two terms can not be told
+    // apart; the whole cost is then put on the cells, which holds for territories of about that size
+    private static final double MIN_RELATIVE_DETERMINANT = 1e-3;
+
+    // weighted sums of cells * cells, cells * units, units * units, cells * nanos and units * nanos
+    // by variant and phase, all zero until measured
+    private final double[][][] sums;
+
+    public CostModel(int variants) {
+        sums = new double[variants][Phase.values().length][5];
+    }
+
+    public void record(int variant, Phase phase, long nanos, int cells, int units) {
+        double[] s = sums[variant][phase.ordinal()];
+        double c = cells, u = Math.max(1, units);
+        for (int k = 0; k < s.length; k++) {
+            s[k] *= FORGETTING;
+        }
+        s[0] += c * c;
+        s[1] += c * u;
+        s[2] += u * u;
+        s[3] += c * nanos;
+        s[4] += u * nanos;
+    }
+
+    // predicted nanoseconds for a whole turn; a variant not measured yet gets the estimate of the
+    // closest more detailed variant that was, which it should not exceed, or infinity if none was
+    public double predict(int variant, int cells, int units) {
+        for (int v = variant; v >= 0; v--) {
+            if (isMeasured(v)) {
+                double total = 0;
+                for (double[] s : sums[v]) {
+                    total += predict(s, cells, Math.max(1, units));
+                }
+                return total;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    // whether every phase of the variant was recorded at least once
+    public boolean isMeasured(int variant) {
+        for (double[] s : sums[variant]) {
+            if (s[0] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double predict(double[] s, double cells, double units) {
+        double determinant = s[0] * s[2] - s[1] * s[1];
+        if (determinant > MIN_RELATIVE_DETERMINANT * s[0] * s[2]) {
+            double a = (s[3] * s[2] - s[4] * s[1]) / determinant;
+            double b = (s[4] * s[0] - s[3] * s[1]) / determinant;
+            if (a >= 0 && b >= 0) {
+                return a * cells + b * units;
+            }
+        }
+        return Math.max(0, s[3] / s[0]) * cells;
+    }
+}
@@ -0,0 +1,44 @@
+import java.util.List;
+
+// the frame we expect to receive next: our moves, production and combat resolved exactly,
+// assuming all other players keep their pieces still
+public class FramePrediction {
+    // a cell only changes if a piece is on it or can reach or damage it, at most two steps away
+    private static final int REACH = 2;
+
+    // writes the frame following current into prediction, a state of the same size; cells no piece
+    // can reach are copied, so early in the game resolving costs the territory instead of the map
+    public static void predict(MapState current, List<Move> moves, MapState prediction) {
+        CombatKernel kernel = new CombatKernel(current);
+        for (Move move : moves) {
+            kernel.setMove(kernel.index(move.loc), move.dir);
+        }
+
+        prediction.copyFrom(current);
+        boolean[] reachable = reachable(current);
+        for (int i = 0; i < reachable.length; i++) {
+            if (reachable[i]) {
+                kernel.resolve(i, prediction.owners, prediction.strengths, i);
+            }
+        }
+    }
+
+    // the cells within REACH steps of any piece, wrapping around the map
+    private static boolean[] reachable(MapState state) {
+        boolean[] reachable = new boolean[state.owners.length];
+        for (int i = 0; i < state.owners.length; i++) {
+            if (state.owners[i] == 0) {
+                continue;
+            }
+            int x = i % state.width, y = i / state.width;
+            for (int dy = -REACH; dy <= REACH; dy++) {
+                int span = REACH - Math.abs(dy);
+                int row = Math.floorMod(y + dy, state.height) * state.width;
+                for (int dx = -span; dx <= span; dx++) {
+                    reachable[row + Math.floorMod(x + dx, state.width)] = true;
+                }
+            }
+        }
+        return reachable;
+    }
+}
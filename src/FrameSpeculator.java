@@ -0,0 +1,78 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// uses the time we spend blocked waiting for the next frame to build the strategy's
+// per-turn structures for the frame we expect to receive
+public class FrameSpeculator {
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "frame-speculator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // private copy of the map the predictions are written to, only touched by the worker
+    private GameMap shadowMap;
+    // the predicted frame, resolved into the same state every turn by the worker
+    private MapState predictedState;
+    private Future<Precomputation> pending;
+
+    // called on the main thread right after our moves were sent
+    public void speculate(GameStrategy gameStrategy, GameContext gameContext, List<Move> moves) {
+        if (shadowMap == null) {
+            shadowMap = copyProductions(gameContext.gameMap);
+            predictedState = shadowMap.snapshot();
+        }
+
+        final Callable<Precomputation> work = gameStrategy.precompute(new GameContext(shadowMap, gameContext.myID));
+        if (work == null) {
+            return;
+        }
+        // the live map is overwritten by the next frame, so its snapshot is taken before we return to
+        // the network; resolving the moves on it is left to the worker
+        final MapState current = gameContext.gameMap.snapshot();
+        final List<Move> sentMoves = new ArrayList<>(moves);
+
+        pending = worker.submit(() -> {
+            FramePrediction.predict(current, sentMoves, predictedState);
+            shadowMap.restore(predictedState);
+            return work.call();
+        });
+    }
+
+    // returns the speculative work validated and patched against the frame that arrived,
+    // or null if there is none, it is not finished or it does not match
+    public Precomputation collect(GameMap gameMap) {
+        Future<Precomputation> result = pending;
+        pending = null;
+
+        if (result == null) {
+            return null;
+        }
+        if (!result.isDone()) {
+            // interrupts the worker, the score field checks for it while it propagates
+            result.cancel(true);
+            return null;
+        }
+
+        try {
+            Precomputation precomputation = result.get();
+            return precomputation != null && precomputation.patch(gameMap) ? precomputation : null;
+        } catch (InterruptedException | ExecutionException e) {
+            return null;
+        }
+    }
+
+    public void close() {
+        worker.shutdownNow();
+    }
+
+    private static GameMap copyProductions(GameMap gameMap) {
+        int[][] productions = new int[gameMap.width][gameMap.height];
+        for (int y = 0; y < gameMap.height; y++) {
+            for (int x = 0; x < gameMap.width; x++) {
+                productions[x][y] = gameMap.getLocation(x, y).getSite().production;
+            }
+        }
+        return new GameMap(gameMap.width, gameMap.height, productions);
+    }
+}
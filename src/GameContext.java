@@ -1,6 +1,8 @@
 public class GameContext {
     public final GameMap gameMap;
     public final int myID;
+    // frames played so far, kept here so it survives switching between strategies
+    public int turn;
 
     public GameContext(GameMap gameMap, int myID) {
         this.gameMap = gameMap;
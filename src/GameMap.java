@@ -4,6 +4,14 @@ public class GameMap{
     private final Site[][] contents;
     private final Location[][] locations;
     public final int width, height;
+    // productions packed like MapState, shared by every snapshot
+    private final int[] productions;
+    // the cells whose owner or strength changed in the latest update, each listed once, and how
+    // many updates there were; lets structures kept across turns apply only what changed
+    private final int[] changedCells;
+    private final boolean[] changed;
+    private int changedCount;
+    private long updates;
 
     public GameMap(int width, int height, int[][] productions) {
 
@@ -11,9 +19,13 @@ public class GameMap{
         this.height = height;
         this.contents = new Site[width][height];
         this.locations = new Location[width][height];
+        this.productions = new int[width * height];
+        this.changedCells = new int[width * height];
+        this.changed = new boolean[width * height];
 
         for (int y = 0; y < height; y++) {
             for(int x = 0; x < width; x++) {
+                this.productions[y * width + x] = productions[x][y];
                 final Site site = new Site(productions[x][y]);
                 contents[x][y] = site;
                 locations[x][y] = new Location(x, y, site);
@@ -80,13 +92,77 @@ public class GameMap{
         return locations[x][y];
     }
 
-    void reset() {
+    // packed copy of the current owners and strengths
+    public MapState snapshot() {
+        MapState state = new MapState(width, height, productions);
+        capture(state);
+        return state;
+    }
+
+    // copies the current owners and strengths into an existing state of the same size
+    public void capture(MapState state) {
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
                 final Site site = contents[x][y];
-                site.owner = 0;
-                site.strength = 0;
+                state.owners[y * width + x] = site.owner;
+                state.strengths[y * width + x] = site.strength;
             }
         }
     }
+
+    // puts the map back into a captured state, as one update
+    public void restore(MapState state) {
+        beginUpdate();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                setOwner(x, y, state.owners[y * width + x]);
+                setStrength(x, y, state.strengths[y * width + x]);
+            }
+        }
+    }
+
+    public long updates() {
+        return updates;
+    }
+
+    public int changedCount() {
+        return changedCount;
+    }
+
+    // the k-th cell changed by the latest update, indexed as y * width + x
+    public int changedCell(int k) {
+        return changedCells[k];
+    }
+
+    // starts a new update, the changes of the previous one are forgotten
+    void beginUpdate() {
+        for (int k = 0; k < changedCount; k++) {
+            changed[changedCells[k]] = false;
+        }
+        changedCount = 0;
+        updates++;
+    }
+
+    void setOwner(int x, int y, int owner) {
+        final Site site = contents[x][y];
+        if (site.owner != owner) {
+            site.owner = owner;
+            markChanged(y * width + x);
+        }
+    }
+
+    void setStrength(int x, int y, int strength) {
+        final Site site = contents[x][y];
+        if (site.strength != strength) {
+            site.strength = strength;
+            markChanged(y * width + x);
+        }
+    }
+
+    private void markChanged(int cell) {
+        if (!changed[cell]) {
+            changed[cell] = true;
+            changedCells[changedCount++] = cell;
+        }
+    }
 }
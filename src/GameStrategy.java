@@ -1,9 +1,16 @@
 import java.util.*;
+import java.util.concurrent.Callable;
 
 public abstract class GameStrategy {
     protected GameMap gameMap;
     protected int myID;
     protected List<Move> moves;
+    // structures built ahead of time for the current frame, null if there are none
+    protected Precomputation precomputed;
+    // ownership bitboards of the current frame, rebuilt with updateOwnerMasks
+    protected OwnerMasks ownerMasks;
+    // connected components of every owner, kept across turns and updated with updateComponents
+    protected TerritoryComponents components;
 
     public GameStrategy() {
 
@@ -11,21 +18,39 @@ public abstract class GameStrategy {
     
     public abstract List<Move> computeBestMoves(GameContext gameContext);
 
-    protected  boolean isNeighbour(Location location) {
-        for (Direction dir : Direction.DIRECTIONS) {
-            Location newLocation = gameMap.getLocation(location, dir);
-            if (newLocation.getSite().owner == myID) {
-                return true;
-            }
+    // returns the work that builds the expensive per-turn structures for a predicted frame;
+    // called on the main thread, but the work runs on a background thread once the predicted
+    // frame is filled in, so it must only read the given context and never the strategy's fields
+    public Callable<Precomputation> precompute(GameContext predictedContext) {
+        return null;
+    }
+
+    public void setPrecomputed(Precomputation precomputed) {
+        this.precomputed = precomputed;
+    }
+
+    protected void updateOwnerMasks() {
+        ownerMasks = new OwnerMasks(gameMap, myID);
+    }
+
+    protected void updateComponents() {
+        if (components == null) {
+            components = new TerritoryComponents(gameMap);
+        } else {
+            components.update(gameMap);
         }
-        return false;
+    }
+
+    // true if the location or one of its neighbours is ours
+    protected  boolean isNeighbour(Location location) {
+        return ownerMasks.mine.get(location.x, location.y) || ownerMasks.frontier.get(location.x, location.y);
     }
 
     protected List<Location> getNeighbours(Location location) {
         List<Location> neighbours = new ArrayList<>();
         for (Direction dir : Direction.DIRECTIONS) {
             Location newLocation = gameMap.getLocation(location, dir);
-            if (newLocation.getSite().owner == myID) {
+            if (ownerMasks.mine.get(newLocation.x, newLocation.y)) {
                 neighbours.add(newLocation);
             }
         }
@@ -33,21 +58,7 @@ public abstract class GameStrategy {
     }
 
     protected  boolean isInnerLoc(int x, int y) {
-        Location location = gameMap.getLocation(x, y);
-
-        List<Location> neighbours = new ArrayList<>();
-        for (Direction dir : Direction.DIRECTIONS) {
-            Location newLocation = gameMap.getLocation(location, dir);
-            neighbours.add(newLocation);
-        }
-
-        for (Location neighbour : neighbours) {
-            if (neighbour.getSite().owner != myID) {
-                return false;
-            }
-        }
-
-        return true;
+        return ownerMasks.interior.get(x, y);
     }
 
     protected  Location findFarthestBoundary(Location start, Direction direction, int limit) {
@@ -0,0 +1,70 @@
+import java.util.function.ToIntFunction;
+
+// a value of every site spread over its surroundings by repeated diffusion passes, so a
+// location also sees what lies a few cells away
+public class InfluenceMap {
+    // how far the influence spreads, roughly one cell per pass
+    public static final int PASSES = 4;
+    private static final float OWN_WEIGHT = 0.5f;
+    private static final float SIDE_WEIGHT = (1 - OWN_WEIGHT) / 4;
+
+    public final int width, height;
+    private final float[] values;
+
+    private InfluenceMap(int width, int height, float[] values) {
+        this.width = width;
+        this.height = height;
+        this.values = values;
+    }
+
+    public static InfluenceMap of(GameMap gameMap, ToIntFunction<Site> value) {
+        float[] plane = new float[gameMap.width * gameMap.height];
+        for (int y = 0; y < gameMap.height; y++) {
+            for (int x = 0; x < gameMap.width; x++) {
+                plane[y * gameMap.width + x] = value.applyAsInt(gameMap.getLocation(x, y).getSite());
+            }
+        }
+        return new InfluenceMap(gameMap.width, gameMap.height, diffuse(plane, gameMap.width, gameMap.height, PASSES));
+    }
+
+    public float get(Location location) {
+        return values[location.y * width + location.x];
+    }
+
+    public float max() {
+        float max = 0;
+        for (float value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    // applies the given number of passes, the plane itself is used as scratch space
+    private static float[] diffuse(float[] plane, int width, int height, int passes) {
+        float[] in = plane;
+        float[] out = new float[plane.length];
+        for (int pass = 0; pass < passes; pass++) {
+            diffusePass(in, out, width, height);
+            float[] swap = in;
+            in = out;
+            out = swap;
+        }
+        return in;
+    }
+
+    // one pass over the toroidal plane stored row by row:
+    // out[x, y] = own * in[x, y] + side * (in[north] + in[east] + in[south] + in[west])
+    private static void diffusePass(float[] in, float[] out, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int north = (y == 0 ? height - 1 : y - 1) * width;
+            int south = (y == height - 1 ? 0 : y + 1) * width;
+            for (int x = 0; x < width; x++) {
+                int east = x == width - 1 ? 0 : x + 1;
+                int west = x == 0 ? width - 1 : x - 1;
+                out[row + x] = OWN_WEIGHT * in[row + x]
+                        + SIDE_WEIGHT * (in[north + x] + in[row + east] + in[south + x] + in[row + west]);
+            }
+        }
+    }
+}
@@ -2,4 +2,7 @@
 public class InitPackage {
     public int myID;
     public GameMap map;
+    // our start location and the book line for it, null if there is no book or no line
+    public Location start;
+    public OpeningBook.Line opening;
 }
@@ -0,0 +1,281 @@
+// port of the seeded map generator of the environment (hlt::Map in environment/core/hlt.hpp):
+// for the same width, height, player count and seed it draws the same random numbers in the same
+// order and does the same floating point operations, so the maps match the ones make fight plays on
+public class MapGenerator {
+    // size of the grid every region is split into
+    private static final int CHUNK_SIZE = 4;
+    // weight a value keeps for itself in the region blur and in the final blur
+    private static final double REGION_OWN_WEIGHT = 0.75;
+    private static final double FINAL_OWN_WEIGHT = 0.66667;
+
+    // a generated map, all cells indexed as y * width + x
+    public static class GeneratedMap {
+        public final int width, height;
+        public final int[] productions, owners, strengths;
+
+        public GeneratedMap(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.productions = new int[width * height];
+            this.owners = new int[width * height];
+            this.strengths = new int[width * height];
+        }
+    }
+
+    // std::mt19937 together with the way libstdc++ turns it into a uniform double in [0, 1)
+    private static class MersenneTwister {
+        private final int[] state = new int[624];
+        private int index;
+
+        MersenneTwister(long seed) {
+            state[0] = (int) seed;
+            for (int i = 1; i < state.length; i++) {
+                state[i] = 1812433253 * (state[i - 1] ^ (state[i - 1] >>> 30)) + i;
+            }
+            index = state.length;
+        }
+
+        // the next 32 bit output, unsigned
+        long next() {
+            if (index >= state.length) {
+                twist();
+            }
+            int y = state[index++];
+            y ^= y >>> 11;
+            y ^= (y << 7) & 0x9d2c5680;
+            y ^= (y << 15) & 0xefc60000;
+            y ^= y >>> 18;
+            return y & 0xffffffffL;
+        }
+
+        // generate_canonical<double, 53> takes two outputs and sums them as doubles
+        double nextDouble() {
+            double sum = next();
+            sum += next() * 4294967296.0;
+            double value = sum / 18446744073709551616.0;
+            return value >= 1.0 ? Math.nextDown(1.0) : value;
+        }
+
+        private void twist() {
+            for (int i = 0; i < state.length; i++) {
+                int y = (state[i] & 0x80000000) | (state[(i + 1) % state.length] & 0x7fffffff);
+                int next = state[(i + 397) % state.length] ^ (y >>> 1);
+                state[i] = (y & 1) != 0 ? next ^ 0x9908b0df : next;
+            }
+            index = 0;
+        }
+    }
+
+    // a rectangle split recursively into up to 4x4 smaller regions, each with its own random factor;
+    // the value of a location is the product of the factors of all regions it lies in
+    private static class Region {
+        private double factor;
+        private final Region[][] children;
+
+        Region(int width, int height, MersenneTwister random) {
+            factor = Math.pow(random.nextDouble(), 1.5);
+            if (width == 1 && height == 1) {
+                children = new Region[0][];
+                return;
+            }
+
+            int cw = width / CHUNK_SIZE, ch = height / CHUNK_SIZE;
+            int difW = width - CHUNK_SIZE * cw, difH = height - CHUNK_SIZE * ch;
+            int rows = Math.min(CHUNK_SIZE, height), columns = Math.min(CHUNK_SIZE, width);
+            children = new Region[rows][columns];
+            for (int a = 0; a < rows; a++) {
+                int tch = a < difH ? ch + 1 : ch;
+                for (int b = 0; b < columns; b++) {
+                    int tcw = b < difW ? cw + 1 : cw;
+                    children[a][b] = new Region(tcw, tch, random);
+                }
+            }
+
+            // one blur pass over the children's factors
+            double[][] blurred = new double[rows][columns];
+            for (int a = 0; a < rows; a++) {
+                int mh = a == 0 ? rows - 1 : a - 1, ph = a == rows - 1 ? 0 : a + 1;
+                for (int b = 0; b < columns; b++) {
+                    int mw = b == 0 ? columns - 1 : b - 1, pw = b == columns - 1 ? 0 : b + 1;
+                    blurred[a][b] += children[a][b].factor * REGION_OWN_WEIGHT;
+                    blurred[a][b] += children[mh][b].factor * (1 - REGION_OWN_WEIGHT) / 4;
+                    blurred[a][b] += children[ph][b].factor * (1 - REGION_OWN_WEIGHT) / 4;
+                    blurred[a][b] += children[a][mw].factor * (1 - REGION_OWN_WEIGHT) / 4;
+                    blurred[a][b] += children[a][pw].factor * (1 - REGION_OWN_WEIGHT) / 4;
+                }
+            }
+            for (int a = 0; a < rows; a++) {
+                for (int b = 0; b < columns; b++) {
+                    children[a][b].factor = blurred[a][b];
+                }
+            }
+        }
+
+        // writes the values of the region into the given rectangle of the plane
+        void fill(double[] plane, int planeWidth, int x0, int y0, int width, int height) {
+            if (children.length == 0) {
+                plane[y0 * planeWidth + x0] = factor;
+                return;
+            }
+            int cw = width / CHUNK_SIZE, ch = height / CHUNK_SIZE;
+            int difW = width - CHUNK_SIZE * cw, difH = height - CHUNK_SIZE * ch;
+            int y = y0;
+            for (int a = 0; a < children.length; a++) {
+                int tch = a < difH ? ch + 1 : ch;
+                int x = x0;
+                for (int b = 0; b < children[a].length; b++) {
+                    int tcw = b < difW ? cw + 1 : cw;
+                    children[a][b].fill(plane, planeWidth, x, y, tcw, tch);
+                    x += tcw;
+                }
+                y += tch;
+            }
+            // the children's values are complete, scale them by our own factor
+            for (int dy = 0; dy < height; dy++) {
+                for (int dx = 0; dx < width; dx++) {
+                    plane[(y0 + dy) * planeWidth + x0 + dx] *= factor;
+                }
+            }
+        }
+    }
+
+    public static GeneratedMap generate(int width, int height, int numberOfPlayers, long seed) {
+        MersenneTwister random = new MersenneTwister(seed);
+
+        // decides whether to put more players along the horizontal or the vertical
+        boolean preferHorizontal = random.next() % 2 != 0;
+
+        // the grid of players closest to a square
+        int dw, dh;
+        if (preferHorizontal) {
+            dh = (int) Math.sqrt(numberOfPlayers);
+            while (numberOfPlayers % dh != 0) {
+                dh--;
+            }
+            dw = numberOfPlayers / dh;
+        } else {
+            dw = (int) Math.sqrt(numberOfPlayers);
+            while (numberOfPlayers % dw != 0) {
+                dw--;
+            }
+            dh = numberOfPlayers / dw;
+        }
+
+        // chunk size, shrunk so the tessellation can be shifted by a whole number of locations
+        int cw = width / dw;
+        int ch = height / dh;
+        if (preferHorizontal) {
+            while (ch % numberOfPlayers != 0) {
+                ch--;
+            }
+        } else {
+            while (cw % numberOfPlayers != 0) {
+                cw--;
+            }
+        }
+        int mapWidth = cw * dw, mapHeight = ch * dh;
+
+        double[] productionChunk = new double[cw * ch];
+        new Region(cw, ch, random).fill(productionChunk, cw, 0, 0, cw, ch);
+        double[] strengthChunk = new double[cw * ch];
+        new Region(cw, ch, random).fill(strengthChunk, cw, 0, 0, cw, ch);
+
+        // tessellate the chunk and mirror every other chunk, so all players get the same surroundings
+        boolean reflectVertical = dh % 2 == 0, reflectHorizontal = dw % 2 == 0;
+        double[] productions = new double[mapWidth * mapHeight];
+        double[] strengths = new double[mapWidth * mapHeight];
+        int[] owners = new int[mapWidth * mapHeight];
+        for (int a = 0; a < dh; a++) {
+            for (int b = 0; b < dw; b++) {
+                boolean vRef = reflectVertical && a % 2 != 0, hRef = reflectHorizontal && b % 2 != 0;
+                for (int c = 0; c < ch; c++) {
+                    for (int d = 0; d < cw; d++) {
+                        int sc = vRef ? ch - c - 1 : c, sd = hRef ? cw - d - 1 : d;
+                        int i = (a * ch + c) * mapWidth + b * cw + d;
+                        productions[i] = productionChunk[sc * cw + sd];
+                        strengths[i] = strengthChunk[sc * cw + sd];
+                        if (sc == ch / 2 && sd == cw / 2) {
+                            owners[i] = a * dw + b + 1;
+                        }
+                    }
+                }
+            }
+        }
+
+        // shift the columns or rows of chunks against each other
+        if (numberOfPlayers != 6) {
+            double[] shiftedProductions = new double[productions.length];
+            double[] shiftedStrengths = new double[strengths.length];
+            int[] shiftedOwners = new int[owners.length];
+            int shift = preferHorizontal
+                    ? (int) (random.next() % dw) * (mapHeight / dw)
+                    : (int) (random.next() % dh) * (mapWidth / dh);
+            for (int a = 0; a < dh; a++) {
+                for (int b = 0; b < dw; b++) {
+                    for (int c = 0; c < ch; c++) {
+                        for (int d = 0; d < cw; d++) {
+                            int y = a * ch + c, x = b * cw + d;
+                            int source = preferHorizontal
+                                    ? ((y + b * shift) % mapHeight) * mapWidth + x
+                                    : y * mapWidth + (x + a * shift) % mapWidth;
+                            shiftedProductions[y * mapWidth + x] = productions[source];
+                            shiftedStrengths[y * mapWidth + x] = strengths[source];
+                            shiftedOwners[y * mapWidth + x] = owners[source];
+                        }
+                    }
+                }
+            }
+            productions = shiftedProductions;
+            strengths = shiftedStrengths;
+            owners = shiftedOwners;
+        }
+
+        // a final blur fixes the edges where the transformations created jumps
+        for (int z = 0; z <= 2 * Math.sqrt(mapWidth * mapHeight) / 10; z++) {
+            productions = blur(productions, mapWidth, mapHeight);
+            strengths = blur(strengths, mapWidth, mapHeight);
+        }
+
+        double maxProduction = 0, maxStrength = 0;
+        for (int i = 0; i < productions.length; i++) {
+            maxProduction = Math.max(maxProduction, productions[i]);
+            maxStrength = Math.max(maxStrength, strengths[i]);
+        }
+
+        int topProduction = (int) (random.next() % 10) + 6;
+        int topStrength = (int) (random.next() % 106) + 150;
+        GeneratedMap map = new GeneratedMap(mapWidth, mapHeight);
+        for (int i = 0; i < productions.length; i++) {
+            map.owners[i] = owners[i];
+            map.strengths[i] = (int) round(strengths[i] / maxStrength * topStrength);
+            map.productions[i] = (int) round(productions[i] / maxProduction * topProduction);
+            if (map.owners[i] != 0 && map.productions[i] == 0) {
+                map.productions[i] = 1;
+            }
+        }
+        return map;
+    }
+
+    private static double[] blur(double[] plane, int width, int height) {
+        double[] blurred = new double[plane.length];
+        for (int a = 0; a < height; a++) {
+            int mh = a == 0 ? height - 1 : a - 1, ph = a == height - 1 ? 0 : a + 1;
+            for (int b = 0; b < width; b++) {
+                int mw = b == 0 ? width - 1 : b - 1, pw = b == width - 1 ? 0 : b + 1;
+                double value = plane[a * width + b] * FINAL_OWN_WEIGHT;
+                value += plane[mh * width + b] * (1 - FINAL_OWN_WEIGHT) / 4;
+                value += plane[ph * width + b] * (1 - FINAL_OWN_WEIGHT) / 4;
+                value += plane[a * width + mw] * (1 - FINAL_OWN_WEIGHT) / 4;
+                value += plane[a * width + pw] * (1 - FINAL_OWN_WEIGHT) / 4;
+                blurred[a * width + b] = value;
+            }
+        }
+        return blurred;
+    }
+
+    // C's round, halfway cases away from zero
+    private static double round(double value) {
+        double floor = Math.floor(value);
+        return value - floor >= 0.5 ? floor + 1 : floor;
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+// copy-on-write view of a map state: reads fall through to the state or overlay below it and
+// writes are kept in a small hash table, so a speculative state only costs the cells it changed;
+// overlays can be stacked to explore a line of play several moves deep
+public class MapOverlay {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final MapState base;
+    private final MapOverlay parent;
+    // open addressing table of the changed cells, a key is the cell index + 1 and 0 marks a free slot
+    private int[] keys, owners, strengths;
+    private int size;
+    // 32 - log2 of the table length, the slot is taken from the top bits of the hash
+    private int shift;
+
+    public MapOverlay(MapState base) {
+        this(base, null);
+    }
+
+    public MapOverlay(MapOverlay parent) {
+        this(parent.base, parent);
+    }
+
+    private MapOverlay(MapState base, MapOverlay parent) {
+        this.base = base;
+        this.parent = parent;
+        this.keys = new int[INITIAL_CAPACITY];
+        this.owners = new int[INITIAL_CAPACITY];
+        this.strengths = new int[INITIAL_CAPACITY];
+        this.shift = Integer.numberOfLeadingZeros(INITIAL_CAPACITY) + 1;
+    }
+
+    public int owner(int cell) {
+        int slot = find(cell);
+        if (keys[slot] != 0) {
+            return owners[slot];
+        }
+        return parent != null ? parent.owner(cell) : base.owners[cell];
+    }
+
+    public int strength(int cell) {
+        int slot = find(cell);
+        if (keys[slot] != 0) {
+            return strengths[slot];
+        }
+        return parent != null ? parent.strength(cell) : base.strengths[cell];
+    }
+
+    public void set(int cell, int owner, int strength) {
+        int slot = find(cell);
+        if (keys[slot] == 0) {
+            keys[slot] = cell + 1;
+            size++;
+        }
+        owners[slot] = owner;
+        strengths[slot] = strength;
+
+        // keep the table at most half full
+        if (2 * size > keys.length) {
+            grow();
+        }
+    }
+
+    // number of cells changed by this overlay, not counting the ones below it
+    public int size() {
+        return size;
+    }
+
+    // forgets every change, so the overlay can be reused for the next branch without allocating
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    // writes the whole view, with the changes of every overlay below this one, into a full state
+    public void applyTo(MapState state) {
+        if (state != base) {
+            state.copyFrom(base);
+        }
+        applyChanges(state);
+    }
+
+    private void applyChanges(MapState state) {
+        if (parent != null) {
+            parent.applyChanges(state);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                state.owners[keys[slot] - 1] = owners[slot];
+                state.strengths[keys[slot] - 1] = strengths[slot];
+            }
+        }
+    }
+
+    // average number of slots looked at to find a changed cell, about 1.5 for a half full table
+    // whose cells are spread evenly
+    double meanProbes() {
+        long probes = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                probes += ((slot - home(keys[slot] - 1)) & (keys.length - 1)) + 1;
+            }
+        }
+        return size == 0 ? 0 : (double) probes / size;
+    }
+
+    // the slot holding the cell, or the free slot where it would go
+    private int find(int cell) {
+        int mask = keys.length - 1;
+        int slot = home(cell);
+        while (keys[slot] != 0 && keys[slot] != cell + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // fibonacci hashing, the top bits mix in every bit of the cell and cover the whole table
+    private int home(int cell) {
+        return (cell * 0x9e3779b9) >>> shift;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys, oldOwners = owners, oldStrengths = strengths;
+        keys = new int[oldKeys.length * 2];
+        owners = new int[oldKeys.length * 2];
+        strengths = new int[oldKeys.length * 2];
+        shift--;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                int target = find(oldKeys[slot] - 1);
+                keys[target] = oldKeys[slot];
+                owners[target] = oldOwners[slot];
+                strengths[target] = oldStrengths[slot];
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+// the map aggregated into square blocks of the requested sizes, kept up to date from the cells the
+// map reports as changed; used to look far across large maps without visiting every cell
+public class MapPyramid {
+    public final int width, height;
+    private final int myID;
+    private final Level[] levels;
+    // owner and strength of every cell as of the last update
+    private final int[] owners, strengths;
+    // the map update the levels reflect
+    private long updates;
+
+    // one level of the pyramid, blocks on the last row and column may be cut short by the map edge
+    public static class Level {
+        public final int blockSize, columns, rows;
+        // totals over the whole block
+        public final int[] production, strength, owned, enemy;
+        // totals over the locations of the block we do not own
+        public final int[] openProduction, openStrength;
+
+        Level(int blockSize, int width, int height) {
+            this.blockSize = blockSize;
+            this.columns = (width + blockSize - 1) / blockSize;
+            this.rows = (height + blockSize - 1) / blockSize;
+            this.production = new int[columns * rows];
+            this.strength = new int[columns * rows];
+            this.owned = new int[columns * rows];
+            this.enemy = new int[columns * rows];
+            this.openProduction = new int[columns * rows];
+            this.openStrength = new int[columns * rows];
+        }
+
+        public int block(int x, int y) {
+            return (y / blockSize) * columns + x / blockSize;
+        }
+
+        // the neighbouring block in the given direction, wrapping around like the map
+        public int neighbour(int block, Direction direction) {
+            int column = block % columns, row = block / columns;
+            switch (direction) {
+                case NORTH:
+                    return (row == 0 ? rows - 1 : row - 1) * columns + column;
+                case EAST:
+                    return row * columns + (column == columns - 1 ? 0 : column + 1);
+                case SOUTH:
+                    return (row == rows - 1 ? 0 : row + 1) * columns + column;
+                case WEST:
+                    return row * columns + (column == 0 ? columns - 1 : column - 1);
+                default:
+                    return block;
+            }
+        }
+
+        private void add(int block, int production, int owner, int strength, int myID, int sign) {
+            this.production[block] += sign * production;
+            this.strength[block] += sign * strength;
+            if (owner == myID) {
+                owned[block] += sign;
+            } else {
+                openProduction[block] += sign * production;
+                openStrength[block] += sign * strength;
+                if (owner != 0) {
+                    enemy[block] += sign;
+                }
+            }
+        }
+    }
+
+    public MapPyramid(GameMap gameMap, int myID, int... blockSizes) {
+        this.width = gameMap.width;
+        this.height = gameMap.height;
+        this.myID = myID;
+        this.levels = new Level[blockSizes.length];
+        this.owners = new int[width * height];
+        this.strengths = new int[width * height];
+
+        for (int l = 0; l < blockSizes.length; l++) {
+            levels[l] = new Level(blockSizes[l], width, height);
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                Site site = gameMap.getLocation(x, y).getSite();
+                owners[y * width + x] = site.owner;
+                strengths[y * width + x] = site.strength;
+                for (Level level : levels) {
+                    level.add(level.block(x, y), site.production, site.owner, site.strength, myID, 1);
+                }
+            }
+        }
+        this.updates = gameMap.updates();
+    }
+
+    // applies the cells changed since the last update; the map only lists the changes of its latest
+    // update, so when more than one update was missed every cell is compared instead
+    public void update(GameMap gameMap) {
+        if (gameMap.updates() == updates + 1) {
+            for (int k = 0; k < gameMap.changedCount(); k++) {
+                apply(gameMap, gameMap.changedCell(k));
+            }
+        } else if (gameMap.updates() != updates) {
+            for (int i = 0; i < width * height; i++) {
+                apply(gameMap, i);
+            }
+        }
+        updates = gameMap.updates();
+    }
+
+    // the level with the given block size
+    public Level level(int blockSize) {
+        for (Level level : levels) {
+            if (level.blockSize == blockSize) {
+                return level;
+            }
+        }
+        throw new IllegalArgumentException("No level with blocks of " + blockSize);
+    }
+
+    private void apply(GameMap gameMap, int i) {
+        int x = i % width, y = i / width;
+        Site site = gameMap.getLocation(x, y).getSite();
+        if (site.owner == owners[i] && site.strength == strengths[i]) {
+            return;
+        }
+        for (Level level : levels) {
+            int block = level.block(x, y);
+            level.add(block, site.production, owners[i], strengths[i], myID, -1);
+            level.add(block, site.production, site.owner, site.strength, myID, 1);
+        }
+        owners[i] = site.owner;
+        strengths[i] = site.strength;
+    }
+}
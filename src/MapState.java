@@ -0,0 +1,32 @@
+// owners and strengths of the whole map packed into two arrays indexed as y * width + x;
+// copying a state is two array copies, so lookahead can branch from it as often as it needs
+public class MapState {
+    public final int width, height;
+    // productions never change during a game, so every copy shares the same array
+    public final int[] productions;
+    public final int[] owners, strengths;
+
+    public MapState(int width, int height, int[] productions) {
+        this.width = width;
+        this.height = height;
+        this.productions = productions;
+        this.owners = new int[width * height];
+        this.strengths = new int[width * height];
+    }
+
+    public MapState copy() {
+        MapState copy = new MapState(width, height, productions);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    // overwrites this state with another one of the same size
+    public void copyFrom(MapState other) {
+        System.arraycopy(other.owners, 0, owners, 0, owners.length);
+        System.arraycopy(other.strengths, 0, strengths, 0, strengths.length);
+    }
+
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+}
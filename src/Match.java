@@ -0,0 +1,600 @@
+import java.io.*;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.*;
+
+// one game between external bots, played with the rules, protocol and timeouts of the halite
+// environment and recorded as a replay the visualizer can open
+public class Match {
+    private static final int MAX_HALITE = 255;
+    private static final int INIT_MILLIS = 15000;
+    private static final int FRAME_MILLIS = 1500;
+    private static final int NAME_LENGTH = 30;
+    private static final int STILL = Direction.STILL.ordinal();
+
+    private final List<String> commands;
+    private final int requestedWidth, requestedHeight;
+    private final long seed;
+    private final boolean ignoreTimeout;
+    private final File replayDirectory;
+
+    private int width, height, players, maxTurns;
+    private int[] productions, owners, strengths;
+    private BotConnection[] bots;
+    private Selector selector;
+    private String[] names;
+    private StringBuilder[] logs;
+    private long[] replyMillis;
+
+    // statistics used for the rankings
+    private int[] aliveFrames, lastTerritory;
+    private long[] fullTerritory;
+    private final List<Integer> rankings = new ArrayList<>();
+    private final Set<Integer> timedOut = new TreeSet<>();
+
+    // every frame as owner and strength pairs, and the moves that led from one to the next
+    private final List<byte[]> frames = new ArrayList<>();
+    private final List<byte[]> frameMoves = new ArrayList<>();
+
+    public Match(List<String> commands, int width, int height, long seed, boolean ignoreTimeout, File replayDirectory) {
+        this.commands = commands;
+        this.requestedWidth = width;
+        this.requestedHeight = height;
+        this.seed = seed;
+        this.ignoreTimeout = ignoreTimeout;
+        this.replayDirectory = replayDirectory;
+    }
+
+    // plays the whole game and returns the results in the format of the halite environment
+    public String play() throws IOException {
+        players = commands.size();
+        setUpMap();
+
+        bots = new BotConnection[players];
+        names = new String[players];
+        logs = new StringBuilder[players];
+        replyMillis = new long[players];
+        aliveFrames = new int[players];
+        lastTerritory = new int[players];
+        fullTerritory = new long[players];
+        Arrays.fill(aliveFrames, 1);
+        Arrays.fill(lastTerritory, 1);
+        Arrays.fill(fullTerritory, 1);
+
+        selector = Selector.open();
+        try {
+            for (int p = 0; p < players; p++) {
+                bots[p] = BotConnection.start(commands.get(p));
+                bots[p].channel().register(selector, SelectionKey.OP_READ, p);
+                logs[p] = new StringBuilder();
+            }
+            recordFrame(null);
+
+            boolean[] alive = initPlayers();
+            int turn = 0;
+            int productiveSquares = 1;
+            while (turn < maxTurns && (count(alive) > 1 || (players == 1 && productiveSquares > 0))) {
+                turn++;
+                boolean[] stillAlive = processFrame(alive, turn);
+
+                List<Integer> died = new ArrayList<>();
+                for (int p = 0; p < players; p++) {
+                    if (alive[p] && !stillAlive[p]) {
+                        died.add(p);
+                    }
+                }
+                rank(died);
+
+                productiveSquares = countProductiveSquares();
+                alive = stillAlive;
+            }
+
+            List<Integer> survivors = new ArrayList<>();
+            for (int p = 0; p < players; p++) {
+                if (alive[p]) {
+                    survivors.add(p);
+                }
+            }
+            rank(survivors);
+            Collections.reverse(rankings);
+
+            return writeResults(alive, countProductiveSquares() == 0);
+        } finally {
+            for (BotConnection bot : bots) {
+                if (bot != null) {
+                    bot.kill();
+                }
+            }
+            selector.close();
+        }
+    }
+
+    private void setUpMap() {
+        MapGenerator.GeneratedMap map = MapGenerator.generate(requestedWidth, requestedHeight, players, seed);
+        width = map.width;
+        height = map.height;
+        productions = map.productions;
+        owners = map.owners;
+        strengths = map.strengths;
+        maxTurns = (int) (Math.sqrt(width * height) * 10);
+
+        // in single player mode the other start locations are left empty
+        if (players == 1) {
+            for (int i = 0; i < owners.length; i++) {
+                if (owners[i] > 1) {
+                    owners[i] = 0;
+                }
+            }
+        }
+    }
+
+    private boolean[] initPlayers() throws IOException {
+        boolean[] waiting = new boolean[players];
+        String map = serializeMap();
+        String size = width + " " + height + " ";
+        String productionString = serializeProductions();
+
+        for (int p = 0; p < players; p++) {
+            long deadline = deadline(INIT_MILLIS);
+            try {
+                bots[p].sendString(String.valueOf(p + 1), deadline);
+                bots[p].sendString(size, deadline);
+                bots[p].sendString(productionString, deadline);
+                bots[p].sendString(map, deadline);
+                logs[p].append(" --- Init ---\n");
+                waiting[p] = true;
+            } catch (InterruptedIOException e) {
+                logs[p].append("\nERRORED!\nTimed out sending the init message.");
+            } catch (IOException e) {
+                logs[p].append("\nERRORED!\nCould not send the init message.");
+            }
+        }
+
+        String[] replies = awaitReplies(waiting, INIT_MILLIS);
+        boolean[] alive = new boolean[players];
+        for (int p = 0; p < players; p++) {
+            if (replies[p] == null) {
+                names[p] = "Bot #" + (p + 1) + "; timed out during Init";
+                rankings.add(p);
+                killPlayer(p);
+                neutralize(p);
+            } else {
+                names[p] = replies[p].substring(0, Math.min(NAME_LENGTH, replies[p].length()));
+                logs[p].append(replies[p]).append("\n --- Bot used ").append(replyMillis[p]).append(" milliseconds ---");
+                alive[p] = true;
+            }
+        }
+        return alive;
+    }
+
+    private boolean[] processFrame(boolean[] alive, int turn) throws IOException {
+        int cells = width * height;
+        for (int p = 0; p < players; p++) {
+            if (alive[p]) {
+                aliveFrames[p]++;
+            }
+        }
+
+        // all bots receive the frame at once and are waited for together
+        boolean[] waiting = new boolean[players];
+        String map = serializeMap();
+        for (int p = 0; p < players; p++) {
+            if (alive[p] && !bots[p].isClosed()) {
+                try {
+                    bots[p].sendString(map, deadline(FRAME_MILLIS));
+                    logs[p].append("\n-----------------------------------------------------------------------------\n --- Frame #")
+                            .append(turn).append(" ---\n");
+                    waiting[p] = true;
+                } catch (InterruptedIOException e) {
+                    logs[p].append("\nERRORED!\nTimed out sending the frame.");
+                } catch (IOException e) {
+                    logs[p].append("\nERRORED!\nCould not send the frame.");
+                }
+            }
+        }
+        String[] replies = awaitReplies(waiting, FRAME_MILLIS);
+
+        int[][] playerMoves = new int[players][];
+        for (int p = 0; p < players; p++) {
+            if (!alive[p]) {
+                continue;
+            }
+            try {
+                if (replies[p] == null) {
+                    throw new IllegalArgumentException("no reply");
+                }
+                logs[p].append(replies[p]).append("\n --- Bot used ").append(replyMillis[p]).append(" milliseconds ---");
+                playerMoves[p] = parseMoves(replies[p]);
+            } catch (IllegalArgumentException e) {
+                killPlayer(p);
+                neutralize(p);
+            }
+        }
+
+        byte[] moves = new byte[cells];
+        int[][] pieces = new int[players][cells];
+        for (int[] playerPieces : pieces) {
+            Arrays.fill(playerPieces, -1);
+        }
+
+        // moved pieces are merged where they land and leave an empty piece behind
+        for (int p = 0; p < players; p++) {
+            if (!alive[p] || playerMoves[p] == null) {
+                continue;
+            }
+            for (int i = 0; i < cells; i++) {
+                int dir = playerMoves[p][i];
+                if (dir < 0 || owners[i] != p + 1) {
+                    continue;
+                }
+                if (dir == STILL) {
+                    strengths[i] = Math.min(MAX_HALITE, strengths[i] + productions[i]);
+                }
+                moves[i] = (byte) dir;
+
+                int target = neighbour(i, dir);
+                pieces[p][target] = pieces[p][target] < 0 ? strengths[i] : Math.min(MAX_HALITE, pieces[p][target] + strengths[i]);
+                if (pieces[p][i] < 0) {
+                    pieces[p][i] = 0;
+                }
+                owners[i] = 0;
+                strengths[i] = 0;
+            }
+        }
+
+        // pieces without a move stay still and produce
+        for (int i = 0; i < cells; i++) {
+            if (owners[i] == 0) {
+                continue;
+            }
+            int p = owners[i] - 1;
+            strengths[i] = Math.min(MAX_HALITE, strengths[i] + productions[i]);
+            pieces[p][i] = pieces[p][i] < 0 ? strengths[i] : Math.min(MAX_HALITE, pieces[p][i] + strengths[i]);
+            owners[i] = 0;
+            strengths[i] = 0;
+        }
+
+        resolveCombat(alive, pieces);
+
+        boolean[] stillAlive = new boolean[players];
+        Arrays.fill(lastTerritory, 0);
+        for (int i = 0; i < cells; i++) {
+            if (owners[i] != 0) {
+                lastTerritory[owners[i] - 1]++;
+                fullTerritory[owners[i] - 1]++;
+                stillAlive[owners[i] - 1] = true;
+            }
+        }
+        recordFrame(moves);
+        return stillAlive;
+    }
+
+    // every piece damages the enemy pieces on and next to its location, and the neutral
+    // strength left on its location; pieces that take at least their strength are removed
+    private void resolveCombat(boolean[] alive, int[][] pieces) {
+        int cells = width * height;
+        int[][] injuries = new int[players][cells];
+        int[] neutralInjuries = new int[cells];
+        for (int[] playerInjuries : injuries) {
+            Arrays.fill(playerInjuries, -1);
+        }
+
+        for (int i = 0; i < cells; i++) {
+            for (int c = 0; c < players; c++) {
+                if (!alive[c] || pieces[c][i] < 0) {
+                    continue;
+                }
+                for (int d = 0; d < players; d++) {
+                    if (d == c || !alive[d]) {
+                        continue;
+                    }
+                    for (Direction dir : Direction.DIRECTIONS) {
+                        int j = neighbour(i, dir.ordinal());
+                        if (pieces[d][j] >= 0) {
+                            injuries[d][j] = Math.max(injuries[d][j], 0) + pieces[c][i];
+                        }
+                    }
+                }
+                if (strengths[i] > 0) {
+                    injuries[c][i] = Math.max(injuries[c][i], 0) + strengths[i];
+                    neutralInjuries[i] += pieces[c][i];
+                }
+            }
+        }
+
+        for (int p = 0; p < players; p++) {
+            if (!alive[p]) {
+                continue;
+            }
+            for (int i = 0; i < cells; i++) {
+                if (injuries[p][i] < 0) {
+                    continue;
+                }
+                pieces[p][i] = injuries[p][i] >= pieces[p][i] ? -1 : pieces[p][i] - injuries[p][i];
+            }
+        }
+
+        for (int i = 0; i < cells; i++) {
+            strengths[i] = Math.max(0, strengths[i] - neutralInjuries[i]);
+            owners[i] = 0;
+        }
+        for (int p = 0; p < players; p++) {
+            for (int i = 0; i < cells; i++) {
+                if (pieces[p][i] >= 0) {
+                    owners[i] = p + 1;
+                    strengths[i] = pieces[p][i];
+                }
+            }
+        }
+    }
+
+    // a bot that does not read its input fails its send after the same timeout it has to reply in
+    private long deadline(long timeoutMillis) {
+        return ignoreTimeout ? Long.MAX_VALUE : System.nanoTime() + timeoutMillis * 1_000_000L;
+    }
+
+    // waits on all listed bots at once until each sent a line or the deadline passed;
+    // bots that timed out or closed their output get a null reply
+    private String[] awaitReplies(boolean[] waiting, long timeoutMillis) throws IOException {
+        String[] replies = new String[players];
+        long start = System.nanoTime();
+        long deadline = ignoreTimeout ? Long.MAX_VALUE : start + timeoutMillis * 1_000_000L;
+
+        int remaining = 0;
+        for (int p = 0; p < players; p++) {
+            if (waiting[p]) {
+                remaining++;
+            }
+        }
+
+        while (remaining > 0) {
+            long left = ignoreTimeout ? 0 : (deadline - System.nanoTime()) / 1_000_000L;
+            if (!ignoreTimeout && left <= 0) {
+                break;
+            }
+            selector.select(left);
+
+            for (SelectionKey key : selector.selectedKeys()) {
+                int p = (Integer) key.attachment();
+                BotConnection bot = bots[p];
+                if (!bot.readAvailable()) {
+                    key.cancel();
+                }
+                if (!waiting[p] || replies[p] != null) {
+                    continue;
+                }
+                String line = bot.pollLine();
+                if (line != null) {
+                    replies[p] = line;
+                    replyMillis[p] = (System.nanoTime() - start) / 1_000_000L;
+                    waiting[p] = false;
+                    remaining--;
+                } else if (bot.isClosed()) {
+                    waiting[p] = false;
+                    remaining--;
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+        return replies;
+    }
+
+    // same checks as the environment: only digits and spaces, triples read until one is out of bounds
+    private int[] parseMoves(String reply) {
+        for (int k = 0; k < reply.length(); k++) {
+            char c = reply.charAt(k);
+            if ((c < '0' || c > '9') && c != ' ') {
+                throw new IllegalArgumentException("Bot sent an invalid character");
+            }
+        }
+
+        int[] moves = new int[width * height];
+        Arrays.fill(moves, -1);
+        String[] tokens = reply.trim().split(" +");
+        for (int k = 0; k + 2 < tokens.length; k += 3) {
+            int x = Integer.parseInt(tokens[k]);
+            int y = Integer.parseInt(tokens[k + 1]);
+            // directions are stored as unsigned chars by the environment
+            int dir = Integer.parseInt(tokens[k + 2]) & 0xFF;
+            if (x >= width || y >= height) {
+                break;
+            }
+            moves[y * width + x] = dir;
+        }
+        return moves;
+    }
+
+    private void killPlayer(int p) {
+        String rest = bots[p].drainOutput();
+        if (!rest.isEmpty()) {
+            logs[p].append("\n --- Bot was killed. Below is the rest of its output (if any): ---\n")
+                    .append(rest).append("\n --- End bot output ---");
+        }
+        bots[p].kill();
+        timedOut.add(p + 1);
+    }
+
+    // the pieces of a player that timed out are given to the neutral player
+    private void neutralize(int p) {
+        for (int i = 0; i < owners.length; i++) {
+            if (owners[i] == p + 1) {
+                owners[i] = 0;
+            }
+        }
+    }
+
+    // players that died together are ranked by their last territory, then by their territory integral
+    private void rank(List<Integer> group) {
+        group.sort(Comparator.<Integer>comparingInt(p -> lastTerritory[p]).thenComparingLong(p -> fullTerritory[p]));
+        rankings.addAll(group);
+    }
+
+    private int neighbour(int i, int dir) {
+        int x = i % width, y = i / width;
+        switch (dir) {
+            case 1:
+                return (y == 0 ? height - 1 : y - 1) * width + x;
+            case 2:
+                return y * width + (x == width - 1 ? 0 : x + 1);
+            case 3:
+                return (y == height - 1 ? 0 : y + 1) * width + x;
+            case 4:
+                return y * width + (x == 0 ? width - 1 : x - 1);
+            default:
+                return i;
+        }
+    }
+
+    private int countProductiveSquares() {
+        int productive = 0;
+        for (int i = 0; i < owners.length; i++) {
+            if (owners[i] == 0 && productions[i] > 0) {
+                productive++;
+            }
+        }
+        return productive;
+    }
+
+    private static int count(boolean[] flags) {
+        int count = 0;
+        for (boolean flag : flags) {
+            if (flag) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private String serializeProductions() {
+        StringBuilder builder = new StringBuilder();
+        for (int production : productions) {
+            builder.append(production).append(' ');
+        }
+        return builder.toString();
+    }
+
+    // run-length encoded owners followed by all strengths, as Networking.deserializeGameMap reads them
+    private String serializeMap() {
+        StringBuilder builder = new StringBuilder();
+        int currentOwner = owners[0];
+        int counter = 0;
+        for (int owner : owners) {
+            if (owner == currentOwner) {
+                counter++;
+            } else {
+                builder.append(counter).append(' ').append(currentOwner).append(' ');
+                counter = 1;
+                currentOwner = owner;
+            }
+        }
+        builder.append(counter).append(' ').append(currentOwner).append(' ');
+        for (int strength : strengths) {
+            builder.append(strength).append(' ');
+        }
+        return builder.toString();
+    }
+
+    private void recordFrame(byte[] moves) {
+        byte[] frame = new byte[2 * owners.length];
+        for (int i = 0; i < owners.length; i++) {
+            frame[2 * i] = (byte) owners[i];
+            frame[2 * i + 1] = (byte) strengths[i];
+        }
+        frames.add(frame);
+        if (moves != null) {
+            frameMoves.add(moves);
+        }
+    }
+
+    private String writeResults(boolean[] alive, boolean mapConquered) throws IOException {
+        String replayName = height + "x" + width + "-" + players + "-" + seed + ".hlt";
+        File replay = new File(replayDirectory, replayName);
+        try (Writer writer = new BufferedWriter(new FileWriter(replay))) {
+            writeReplay(writer, mapConquered);
+        }
+
+        StringBuilder results = new StringBuilder("Replay file: ").append(replay.getPath()).append('\n');
+        for (int p = 0; p < players; p++) {
+            results.append("Player #").append(p + 1).append(", ").append(names[p])
+                    .append(", came in rank #").append(rankings.indexOf(p) + 1)
+                    .append(" and was last alive on frame #").append(aliveFrames[p] - 2 + (alive[p] ? 1 : 0))
+                    .append("!\n");
+        }
+
+        // players that timed out or errored get their log written next to the replay
+        for (int tag : timedOut) {
+            File log = new File(replayDirectory, tag + "-" + seed + ".log");
+            try (Writer writer = new FileWriter(log)) {
+                writer.write(logs[tag - 1].toString());
+            }
+            results.append("Log for player #").append(tag).append(": ").append(log.getPath()).append('\n');
+        }
+        return results.toString();
+    }
+
+    // version 11 replay, the format written by the halite environment
+    private void writeReplay(Writer writer, boolean mapConquered) throws IOException {
+        writer.write("{\"version\":11,\"width\":" + width + ",\"height\":" + height
+                + ",\"num_players\":" + players + ",\"num_frames\":" + frames.size() + ",\"player_names\":[");
+        for (int p = 0; p < players; p++) {
+            writer.write((p > 0 ? "," : "") + quote(names[p]));
+        }
+        writer.write("],\"productions\":[");
+        for (int y = 0; y < height; y++) {
+            writer.write(y > 0 ? ",[" : "[");
+            for (int x = 0; x < width; x++) {
+                writer.write((x > 0 ? "," : "") + productions[y * width + x]);
+            }
+            writer.write(']');
+        }
+
+        writer.write("],\"frames\":[");
+        for (int f = 0; f < frames.size(); f++) {
+            byte[] frame = frames.get(f);
+            writer.write(f > 0 ? ",[" : "[");
+            for (int y = 0; y < height; y++) {
+                writer.write(y > 0 ? ",[" : "[");
+                for (int x = 0; x < width; x++) {
+                    int i = y * width + x;
+                    writer.write((x > 0 ? ",[" : "[") + (frame[2 * i] & 0xFF) + "," + (frame[2 * i + 1] & 0xFF) + "]");
+                }
+                writer.write(']');
+            }
+            writer.write(']');
+        }
+
+        writer.write("],\"moves\":[");
+        for (int f = 0; f < frameMoves.size(); f++) {
+            byte[] moves = frameMoves.get(f);
+            writer.write(f > 0 ? ",[" : "[");
+            for (int y = 0; y < height; y++) {
+                writer.write(y > 0 ? ",[" : "[");
+                for (int x = 0; x < width; x++) {
+                    writer.write((x > 0 ? "," : "") + (moves[y * width + x] & 0xFF));
+                }
+                writer.write(']');
+            }
+            writer.write(']');
+        }
+
+        writer.write("],\"map_conquered\":" + mapConquered);
+        if (!rankings.isEmpty()) {
+            writer.write(",\"winner\":" + quote(names[rankings.get(0)]));
+        }
+        writer.write('}');
+    }
+
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+// runs matches between external bots without the halite environment, many of them at once:
+//   java -cp classes MatchRunner -d "40 40" -s 42 -g 8 -j 4 "java -cp classes BotV2" "bots/starkbot_linux_x64"
+public class MatchRunner {
+    private static final int[] MAP_SIZES = {20, 25, 25, 30, 30, 30, 35, 35, 35, 35, 40, 40, 40, 45, 45, 50};
+
+    public static void main(String[] args) throws InterruptedException {
+        int width = 0, height = 0;
+        long seed = System.currentTimeMillis() % 4294967295L;
+        int games = 1;
+        int parallel = Runtime.getRuntime().availableProcessors();
+        boolean ignoreTimeout = false;
+        File replayDirectory = new File(".");
+        List<String> commands = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-d":
+                    String[] dimensions = args[++i].trim().split(" +");
+                    width = Integer.parseInt(dimensions[0]);
+                    height = Integer.parseInt(dimensions[1]);
+                    break;
+                case "-s":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-g":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "-j":
+                    parallel = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    ignoreTimeout = true;
+                    break;
+                case "-o":
+                    replayDirectory = new File(args[++i]);
+                    break;
+                default:
+                    commands.add(args[i]);
+            }
+        }
+
+        if (commands.isEmpty() || commands.size() > 6) {
+            System.out.println("Usage: MatchRunner [-d \"W H\"] [-s seed] [-g games] [-j parallel] [-t] [-o dir] <bot command>...");
+            System.out.println("A match accommodates between 1 and 6 bots.");
+            System.exit(1);
+        }
+        replayDirectory.mkdirs();
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallel);
+        List<Future<String>> results = new ArrayList<>();
+        Random sizes = new Random(seed);
+        for (int g = 0; g < games; g++) {
+            int size = MAP_SIZES[sizes.nextInt(MAP_SIZES.length)];
+            Match match = new Match(commands, width == 0 ? size : width, height == 0 ? size : height,
+                    seed + g, ignoreTimeout, replayDirectory);
+            results.add(pool.submit(match::play));
+        }
+
+        for (Future<String> result : results) {
+            try {
+                System.out.print(result.get());
+            } catch (ExecutionException e) {
+                System.out.println("Match failed: " + e.getCause());
+            }
+        }
+        pool.shutdown();
+    }
+}
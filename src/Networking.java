@@ -4,9 +4,36 @@ import java.util.ArrayList;
 import java.util.Scanner;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.Channels;
 import java.util.List;
 
+// the line protocol of the halite environment over a pair of streams: the bot's own stdin and
+// stdout, or the channel of one game served by BotHost
 public class Networking {
+    public static final Networking STDIO = new Networking(System.in, System.out, true);
+
+    private final InputStream in;
+    private final OutputStream out;
+    // a bot on its own stdio exits when the environment goes away; a hosted game must not take
+    // the other games down with it, so there a lost connection is thrown instead
+    private final boolean exitOnError;
+
+    public Networking(InputStream in, OutputStream out) {
+        this(in, out, false);
+    }
+
+    private Networking(InputStream in, OutputStream out, boolean exitOnError) {
+        this.in = in;
+        this.out = out;
+        this.exitOnError = exitOnError;
+    }
+
+    // a game played over a socket or pipe channel
+    public static Networking open(ByteChannel channel) {
+        return new Networking(new BufferedInputStream(Channels.newInputStream(channel)),
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
 
     static int[][] deserializeProductions(String inputString, int width, int height) {
         String[] inputStringComponents = inputString.split(" ");
@@ -54,7 +81,7 @@ public class Networking {
             currentIndex += 2;
             for (int a = 0; a < counter; a++) {
 
-                map.getLocation(x,y).getSite().owner = owner;
+                map.setOwner(x, y, owner);
                 ++x;
                 if(x == map.width) {
                     x = 0;
@@ -67,38 +94,52 @@ public class Networking {
             for (int a = 0; a < map.width; a++) {
                 int strengthInt = Integer.parseInt(inputStringComponents[currentIndex]);
                 currentIndex++;
-                map.getLocation(a,b).getSite().strength = strengthInt;
+                map.setStrength(a, b, strengthInt);
             }
         }
 
         return map;
     }
 
-    static void sendString(String sendString) {
-        System.out.print(sendString+'\n');
-        System.out.flush();
+    void sendString(String sendString) {
+        try {
+            out.write((sendString + '\n').getBytes());
+            out.flush();
+        } catch (IOException e) {
+            lost(e);
+        }
     }
 
-    static String getString() {
+    String getString() {
         try {
             StringBuilder builder = new StringBuilder();
             int buffer;
-            while ((buffer = System.in.read()) >= 0) {
+            while ((buffer = in.read()) >= 0) {
                 if (buffer == '\n') {
                     break;
                 } else {
                     builder = builder.append((char)buffer);
                 }
             }
+            if (buffer < 0 && builder.length() == 0) {
+                throw new EOFException("The game closed the connection");
+            }
 	    if(builder.charAt(builder.length()-1) == '\r') builder.setLength(builder.length()-1); //Removes a carriage return if on windows for manual testing.
             return builder.toString();
         } catch(Exception e) {
-            System.exit(1);
+            lost(e);
             return null; // the java compiler is stupid
         }
     }
 
-    static InitPackage getInit() {
+    private void lost(Exception e) {
+        if (exitOnError) {
+            System.exit(1);
+        }
+        throw new UncheckedIOException(e instanceof IOException ? (IOException) e : new IOException(e));
+    }
+
+    InitPackage getInit() {
 
         InitPackage initPackage = new InitPackage();
         initPackage.myID = (int)Integer.parseInt(getString());
@@ -116,19 +157,27 @@ public class Networking {
 
         initPackage.map = map;
 
+        // look up the opening for our start while we still have the long init timeout
+        initPackage.start = OpeningBook.findStart(map, initPackage.myID);
+        OpeningBook book = OpeningBook.load(OpeningBook.DEFAULT_PATH);
+        if (book != null && initPackage.start != null) {
+            initPackage.opening = book.lookup(OpeningBook.key(map, initPackage.start));
+        }
+
         return initPackage;
     }
 
-    static void sendInit(String name) {
+    void sendInit(String name) {
         sendString(name);
     }
 
-    static void updateFrame(GameMap map) {
-        map.reset();
+    void updateFrame(GameMap map) {
+        // every cell is written, only the ones that differ are recorded as changed
+        map.beginUpdate();
         deserializeGameMap(getString(), map);
     }
 
-    static void sendFrame(List<Move> moves) {
+    void sendFrame(List<Move> moves) {
         sendString(serializeMoveList(moves));
     }
 
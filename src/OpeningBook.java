@@ -0,0 +1,241 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+// opening lines played from our start location, keyed by the production pattern around it and built
+// offline by OpeningBookBuilder; the file is memory mapped, so only the line we need is ever read
+//
+// layout: magic, version, entry count, then entry count sorted {key, offset} pairs, then the lines;
+// a line is its turn count followed by {move count, moves} per turn, a move being the bytes
+// {dx, dy, dir, target owner, capture, target production} as recorded before it was played
+public class OpeningBook {
+    public static final String DEFAULT_PATH = "opening.book";
+    // locations around the start that make up the key
+    public static final int KEY_RADIUS = 2;
+
+    private static final int MAGIC = 0x484f424b;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 12;
+    private static final int INDEX_ENTRY_BYTES = 12;
+    private static final int TURN_HEADER_BYTES = 2;
+    private static final int MOVE_BYTES = 6;
+    // productions are at most 15, they are quantised for the key so that maps of any size and seed
+    // with the same pattern around the start share a line
+    private static final int PRODUCTION_LEVELS = 3;
+    private static final int MAX_PRODUCTION = 16;
+    // the owner of a move's target relative to us
+    static final int NEUTRAL = 0, OURS = 1, THEIRS = 2;
+
+    private final ByteBuffer buffer;
+    private final int entries;
+
+    // the moves of one game from our start, relative to it
+    public static class Line {
+        // the moves of every turn, MOVE_BYTES each
+        final byte[][] moves;
+
+        public Line(byte[][] moves) {
+            this.moves = moves;
+        }
+
+        public int turns() {
+            return moves.length;
+        }
+
+        // the book moves for the turn, or null once the game has left the line: the line is over, or a
+        // move of the turn no longer fits the map, its piece is not ours, its target changed hands, it
+        // captures where it did not or the other way round, or its target produces another amount; the
+        // map only shares its quantised production pattern with the one the line was recorded on, so
+        // every move is checked
+        public List<Move> movesFor(GameMap gameMap, int myID, Location start, int turn) {
+            if (turn >= turns()) {
+                return null;
+            }
+
+            List<Move> result = new ArrayList<>();
+            byte[] turnMoves = moves[turn];
+            for (int m = 0; m < turnMoves.length; m += MOVE_BYTES) {
+                int x = Math.floorMod(start.x + turnMoves[m], gameMap.width);
+                int y = Math.floorMod(start.y + turnMoves[m + 1], gameMap.height);
+                Location location = gameMap.getLocation(x, y);
+                Direction direction = Direction.values()[turnMoves[m + 2]];
+                Site target = gameMap.getLocation(location, direction).getSite();
+                if (location.getSite().owner != myID || relativeOwner(target.owner, myID) != turnMoves[m + 3]
+                        || captures(gameMap, location, direction, myID) != (turnMoves[m + 4] != 0)
+                        || target.production != turnMoves[m + 5]) {
+                    return null;
+                }
+                result.add(new Move(location, direction));
+            }
+            return result;
+        }
+    }
+
+    private OpeningBook(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not an opening book");
+        }
+        this.entries = buffer.getInt(8);
+        if (entries < 0 || linesStart() > buffer.limit()) {
+            throw new IllegalArgumentException("Opening book index is cut short");
+        }
+    }
+
+    // maps the book, or returns null if there is no readable book at the path
+    public static OpeningBook load(String path) {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            return new OpeningBook(buffer);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // the line for the key, or null if the book has none or its line is malformed
+    public Line lookup(long key) {
+        int low = 0, high = entries - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = buffer.getLong(HEADER_BYTES + middle * INDEX_ENTRY_BYTES);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return readLine(buffer.getInt(HEADER_BYTES + middle * INDEX_ENTRY_BYTES + 8));
+            }
+        }
+        return null;
+    }
+
+    // first byte after the index, where the lines start
+    private long linesStart() {
+        return HEADER_BYTES + (long) entries * INDEX_ENTRY_BYTES;
+    }
+
+    // reads the line at the offset, or returns null if it does not lie within the lines or holds
+    // counts or directions no book writes
+    private Line readLine(int offset) {
+        if (offset < linesStart() || !fits(offset, 2)) {
+            return null;
+        }
+        int turns = buffer.getShort(offset);
+        if (turns < 0) {
+            return null;
+        }
+        int position = offset + 2;
+        byte[][] moves = new byte[turns][];
+        for (int t = 0; t < turns; t++) {
+            if (!fits(position, TURN_HEADER_BYTES)) {
+                return null;
+            }
+            int moveCount = buffer.getShort(position);
+            position += TURN_HEADER_BYTES;
+            if (moveCount < 0 || !fits(position, (long) MOVE_BYTES * moveCount)) {
+                return null;
+            }
+            moves[t] = new byte[MOVE_BYTES * moveCount];
+            for (int m = 0; m < moves[t].length; m++) {
+                moves[t][m] = buffer.get(position++);
+            }
+            for (int m = 2; m < moves[t].length; m += MOVE_BYTES) {
+                if (moves[t][m] < 0 || moves[t][m] >= Direction.values().length) {
+                    return null;
+                }
+            }
+        }
+        return new Line(moves);
+    }
+
+    // whether length bytes from the position lie within the book
+    private boolean fits(long position, long length) {
+        return position + length <= buffer.limit();
+    }
+
+    public static void write(String path, Map<Long, Line> lines) throws IOException {
+        List<Long> keys = new ArrayList<>(lines.keySet());
+        Collections.sort(keys);
+
+        int size = HEADER_BYTES + keys.size() * INDEX_ENTRY_BYTES;
+        for (Line line : lines.values()) {
+            size += 2;
+            for (byte[] turnMoves : line.moves) {
+                size += TURN_HEADER_BYTES + turnMoves.length;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(keys.size());
+        int offset = HEADER_BYTES + keys.size() * INDEX_ENTRY_BYTES;
+        for (long key : keys) {
+            buffer.putLong(key).putInt(offset);
+            offset += 2;
+            for (byte[] turnMoves : lines.get(key).moves) {
+                offset += TURN_HEADER_BYTES + turnMoves.length;
+            }
+        }
+        for (long key : keys) {
+            Line line = lines.get(key);
+            buffer.putShort((short) line.turns());
+            for (int t = 0; t < line.turns(); t++) {
+                buffer.putShort((short) (line.moves[t].length / MOVE_BYTES));
+                buffer.put(line.moves[t]);
+            }
+        }
+        Files.write(Paths.get(path), buffer.array());
+    }
+
+    // hash of the quantised productions around the start location; the strengths, the map size and
+    // the players are left out, they would make every map its own key
+    public static long key(GameMap gameMap, Location start) {
+        long hash = 0xcbf29ce484222325L;
+        for (int dy = -KEY_RADIUS; dy <= KEY_RADIUS; dy++) {
+            for (int dx = -KEY_RADIUS; dx <= KEY_RADIUS; dx++) {
+                int x = Math.floorMod(start.x + dx, gameMap.width);
+                int y = Math.floorMod(start.y + dy, gameMap.height);
+                int production = gameMap.getLocation(x, y).getSite().production;
+                hash = (hash ^ production * PRODUCTION_LEVELS / MAX_PRODUCTION) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    static int relativeOwner(int owner, int myID) {
+        return owner == 0 ? NEUTRAL : owner == myID ? OURS : THEIRS;
+    }
+
+    // whether the move takes a location we do not own; for a piece that stays still, whether it could
+    // have taken one of its neighbours, so a line that waits is left when waiting stops being forced
+    static boolean captures(GameMap gameMap, Location location, Direction direction, int myID) {
+        if (direction != Direction.STILL) {
+            return takes(location.getSite(), gameMap.getSite(location, direction), myID);
+        }
+        for (Direction cardinal : Direction.CARDINALS) {
+            if (takes(location.getSite(), gameMap.getSite(location, cardinal), myID)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean takes(Site piece, Site target, int myID) {
+        return target.owner != myID && piece.strength > target.strength;
+    }
+
+    // our only location at the start of the game
+    public static Location findStart(GameMap gameMap, int myID) {
+        for (int y = 0; y < gameMap.height; y++) {
+            for (int x = 0; x < gameMap.width; x++) {
+                if (gameMap.getLocation(x, y).getSite().owner == myID) {
+                    return gameMap.getLocation(x, y);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,243 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+// builds the opening book from self-play on generated maps, without bots or the environment:
+//   java -cp classes OpeningBookBuilder -o opening.book -s 42 -g 10000 -t 30
+// the book stands in for the strategy the bot plays, so its opening is looked up instead of computed:
+// the strategy plays every start in process, and as starts with the same key share a line in the bot,
+// each line is replayed on the starts of its key on other maps and cut where the strategy would have
+// played something else there; the line kept longest is stored under the key
+public class OpeningBookBuilder {
+    private static final int[] MAP_SIZES = {20, 25, 25, 30, 30, 30, 35, 35, 35, 35, 40, 40, 40, 45, 45, 50};
+    // lines tried and starts replayed per key, the replays grow with the product of the two
+    private static final int MAX_CANDIDATE_LINES = 8;
+    private static final int MAX_REPLAYED_STARTS = 64;
+    // a line always agrees with the strategy on the map it was recorded on, so it is only judged on
+    // the starts of its key on other maps and needs at least this many of them
+    private static final int MIN_OTHER_STARTS = 10;
+
+    // a start location of a generated map, with the seed its strategy draws from
+    private static class Start {
+        final MapGenerator.GeneratedMap generated;
+        final int player;
+        final long seed;
+
+        Start(MapGenerator.GeneratedMap generated, int player, long seed) {
+            this.generated = generated;
+            this.player = player;
+            this.seed = seed;
+        }
+
+        // the strategy the bot plays, the most detailed variant on every map the book is built from;
+        // it draws from a random seeded by the map, so the same seed builds the same book
+        GameStrategy strategy() {
+            return new StageTwoStrategy(ScoreField.UNBOUNDED, new Random(seed));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String path = OpeningBook.DEFAULT_PATH;
+        long seed = 42;
+        int maps = 200;
+        int turns = 30;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-o":
+                    path = args[++i];
+                    break;
+                case "-s":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-g":
+                    maps = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    turns = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.out.println("Usage: OpeningBookBuilder [-o path] [-s seed] [-g maps] [-t turns]");
+                    System.exit(1);
+            }
+        }
+
+        Map<Long, List<Start>> startsByKey = new LinkedHashMap<>();
+        Random random = new Random(seed);
+        for (int g = 0; g < maps; g++) {
+            int size = MAP_SIZES[random.nextInt(MAP_SIZES.length)];
+            int players = 2 + random.nextInt(5);
+            MapGenerator.GeneratedMap generated = MapGenerator.generate(size, size, players, seed + g);
+
+            for (int player = 1; player <= players; player++) {
+                GameMap gameMap = toGameMap(generated);
+                long key = OpeningBook.key(gameMap, OpeningBook.findStart(gameMap, player));
+                // the generated maps are symmetric, so the other starts of the same map would only
+                // replay the start already kept
+                List<Start> starts = startsByKey.computeIfAbsent(key, k -> new ArrayList<>());
+                if (starts.isEmpty() || starts.get(starts.size() - 1).generated != generated) {
+                    starts.add(new Start(generated, player, seed + g));
+                }
+            }
+        }
+
+        Map<Long, OpeningBook.Line> lines = new HashMap<>();
+        for (Map.Entry<Long, List<Start>> entry : startsByKey.entrySet()) {
+            OpeningBook.Line line = bestSharedLine(entry.getValue(), turns);
+            if (line != null) {
+                lines.put(entry.getKey(), line);
+            }
+        }
+
+        OpeningBook.write(path, lines);
+        System.out.println("Wrote " + lines.size() + " lines for " + startsByKey.size() + " keys to " + path);
+    }
+
+    // the candidate line followed the furthest on the other starts of one key, cut where the strategy
+    // would have played something else on any of them and where none of them follows it any more, or
+    // null if none is followed for a single turn
+    private static OpeningBook.Line bestSharedLine(List<Start> starts, int turns) {
+        if (starts.size() <= MIN_OTHER_STARTS) {
+            return null;
+        }
+        List<Start> replayed = starts.subList(0, Math.min(starts.size(), MAX_REPLAYED_STARTS));
+
+        OpeningBook.Line bestLine = null;
+        int bestTurns = 0;
+        for (int c = 0; c < Math.min(starts.size(), MAX_CANDIDATE_LINES); c++) {
+            Start recorded = starts.get(c);
+            OpeningBook.Line line = play(toGameMap(recorded.generated), recorded.player, recorded.strategy(), turns);
+            int agreed = line.turns(), followed = 0;
+            for (int s = 0; s < replayed.size() && agreed > bestTurns; s++) {
+                if (s != c) {
+                    Replay replay = replay(replayed.get(s), line);
+                    if (replay.disagrees) {
+                        agreed = Math.min(agreed, replay.followed);
+                    }
+                    followed = Math.max(followed, replay.followed);
+                }
+            }
+            agreed = Math.min(agreed, followed);
+            if (agreed > bestTurns) {
+                bestTurns = agreed;
+                bestLine = new OpeningBook.Line(Arrays.copyOf(line.moves, agreed));
+            }
+        }
+        return bestLine;
+    }
+
+    // plays the given number of turns, every other player keeps its pieces still, and returns the moves
+    // played as a line, up to the first turn that moves onto a location outside the key: only the
+    // locations of the key are alike on every map that shares it
+    private static OpeningBook.Line play(GameMap gameMap, int player, GameStrategy strategy, int turns) {
+        Location start = OpeningBook.findStart(gameMap, player);
+        GameContext gameContext = new GameContext(gameMap, player);
+        byte[][] moves = new byte[turns][];
+        int keyedTurns = turns;
+
+        for (int t = 0; t < turns; t++) {
+            gameContext.turn++;
+            List<Move> turnMoves = strategy.computeBestMoves(gameContext);
+
+            ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+            for (Move move : turnMoves) {
+                // still pieces are stored as well, with what every move found at its target so the bot
+                // can tell when its map no longer fits the line
+                Location target = gameMap.getLocation(move.loc, move.dir);
+                if (Math.abs(relative(target.x - start.x, gameMap.width)) > OpeningBook.KEY_RADIUS
+                        || Math.abs(relative(target.y - start.y, gameMap.height)) > OpeningBook.KEY_RADIUS) {
+                    keyedTurns = Math.min(keyedTurns, t);
+                }
+                recorded.write(relative(move.loc.x - start.x, gameMap.width));
+                recorded.write(relative(move.loc.y - start.y, gameMap.height));
+                recorded.write(move.dir.ordinal());
+                recorded.write(OpeningBook.relativeOwner(target.getSite().owner, player));
+                recorded.write(OpeningBook.captures(gameMap, move.loc, move.dir, player) ? 1 : 0);
+                recorded.write(target.getSite().production);
+            }
+            moves[t] = recorded.toByteArray();
+            resolve(gameMap, turnMoves);
+        }
+        return new OpeningBook.Line(Arrays.copyOf(moves, keyedTurns));
+    }
+
+    // how the bot fares with a line on a start: the turns it follows the line while the strategy would
+    // have moved the same, and whether it then meets a turn where the strategy would not have; a line
+    // the map stops fitting is left for the strategy, which is no disagreement
+    private static class Replay {
+        final int followed;
+        final boolean disagrees;
+
+        Replay(int followed, boolean disagrees) {
+            this.followed = followed;
+            this.disagrees = disagrees;
+        }
+    }
+
+    private static Replay replay(Start start, OpeningBook.Line line) {
+        GameMap gameMap = toGameMap(start.generated);
+        Location location = OpeningBook.findStart(gameMap, start.player);
+        GameContext gameContext = new GameContext(gameMap, start.player);
+        GameStrategy strategy = start.strategy();
+
+        for (int t = 0; t < line.turns(); t++) {
+            gameContext.turn++;
+            List<Move> bookMoves = line.movesFor(gameMap, start.player, location, t);
+            if (bookMoves == null) {
+                return new Replay(t, false);
+            }
+            List<Move> strategyMoves = strategy.computeBestMoves(gameContext);
+            if (!directions(gameMap, bookMoves).equals(directions(gameMap, strategyMoves))) {
+                return new Replay(t, true);
+            }
+            resolve(gameMap, strategyMoves);
+        }
+        return new Replay(line.turns(), false);
+    }
+
+    // the direction of every piece that moves
+    private static Map<Integer, Direction> directions(GameMap gameMap, List<Move> moves) {
+        Map<Integer, Direction> directions = new HashMap<>();
+        for (Move move : moves) {
+            if (move.dir != Direction.STILL) {
+                directions.put(move.loc.y * gameMap.width + move.loc.x, move.dir);
+            }
+        }
+        return directions;
+    }
+
+    // plays the moves on the map, the pieces of every other player stay still
+    private static void resolve(GameMap gameMap, List<Move> moves) {
+        MapState current = gameMap.snapshot();
+        CombatKernel kernel = new CombatKernel(current);
+        for (Move move : moves) {
+            kernel.setMove(kernel.index(move.loc), move.dir);
+        }
+        MapState next = new MapState(current.width, current.height, current.productions);
+        for (int i = 0; i < next.owners.length; i++) {
+            kernel.resolve(i, next.owners, next.strengths, i);
+        }
+        gameMap.restore(next);
+    }
+
+    // the shortest offset around the map
+    private static int relative(int delta, int size) {
+        return Math.floorMod(delta + size / 2, size) - size / 2;
+    }
+
+    private static GameMap toGameMap(MapGenerator.GeneratedMap generated) {
+        int[][] productions = new int[generated.width][generated.height];
+        MapState state = new MapState(generated.width, generated.height, generated.productions);
+        for (int y = 0; y < generated.height; y++) {
+            for (int x = 0; x < generated.width; x++) {
+                productions[x][y] = generated.productions[y * generated.width + x];
+            }
+        }
+        System.arraycopy(generated.owners, 0, state.owners, 0, state.owners.length);
+        System.arraycopy(generated.strengths, 0, state.strengths, 0, state.strengths.length);
+
+        GameMap gameMap = new GameMap(generated.width, generated.height, productions);
+        gameMap.restore(state);
+        return gameMap;
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// checks the copy-on-write overlays against full map states, run with:
+//   java -cp classes OverlayCheck
+// exits with 1 if any view differs from the state it stands for
+public class OverlayCheck {
+    private static final int[] SIZES = {20, 30, 50};
+    private static final int PLAYERS = 4;
+    private static final int TURNS = 40;
+    // large enough for the change table to outgrow 65536 slots
+    private static final int LARGE_SIZE = 300;
+    // a half full table needs about 1.5 probes per cell when the hash spreads the cells evenly
+    private static final double MAX_MEAN_PROBES = 3;
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        for (int size : SIZES) {
+            checkPrediction(size, random);
+        }
+        checkStacked(LARGE_SIZE, random);
+
+        System.out.println(failures == 0 ? "all overlays match" : failures + " CHECKS FAILED");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // plays random moves and compares every predicted frame, and the same frame kept as a branch,
+    // with the frame resolved in full
+    private static void checkPrediction(int size, Random random) {
+        MapGenerator.GeneratedMap generated = MapGenerator.generate(size, size, PLAYERS, random.nextLong());
+        int width = generated.width, height = generated.height;
+        int[][] productions = new int[width][height];
+        MapState state = new MapState(width, height, generated.productions);
+        for (int i = 0; i < width * height; i++) {
+            productions[i % width][i / width] = generated.productions[i];
+            state.owners[i] = generated.owners[i];
+            state.strengths[i] = generated.strengths[i];
+        }
+        GameMap gameMap = new GameMap(width, height, productions);
+        gameMap.restore(state);
+
+        int changed = 0;
+        for (int turn = 0; turn < TURNS; turn++) {
+            List<Move> moves = new ArrayList<>();
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    Location location = gameMap.getLocation(x, y);
+                    if (location.getSite().owner != 0) {
+                        moves.add(new Move(location, Direction.values()[random.nextInt(Direction.values().length)]));
+                    }
+                }
+            }
+
+            MapState current = gameMap.snapshot();
+            CombatKernel kernel = new CombatKernel(current);
+            for (Move move : moves) {
+                kernel.setMove(kernel.index(move.loc), move.dir);
+            }
+            MapState expected = new MapState(width, height, current.productions);
+            for (int i = 0; i < expected.owners.length; i++) {
+                kernel.resolve(i, expected.owners, expected.strengths, i);
+            }
+
+            MapState predicted = new MapState(width, height, current.productions);
+            FramePrediction.predict(current, moves, predicted);
+            compare("prediction " + width + "x" + height + " turn " + turn, predicted, expected);
+
+            // the same frame as a branch over the current one, holding only the cells that changed
+            MapOverlay branch = new MapOverlay(current);
+            for (int i = 0; i < expected.owners.length; i++) {
+                if (expected.owners[i] != current.owners[i] || expected.strengths[i] != current.strengths[i]) {
+                    branch.set(i, expected.owners[i], expected.strengths[i]);
+                }
+            }
+            for (int i = 0; i < expected.owners.length; i++) {
+                if (branch.owner(i) != expected.owners[i] || branch.strength(i) != expected.strengths[i]) {
+                    fail("branch " + width + "x" + height + " turn " + turn + " reads cell " + i + " wrong");
+                    return;
+                }
+            }
+            MapState applied = new MapState(width, height, current.productions);
+            branch.applyTo(applied);
+            compare("branch " + width + "x" + height + " turn " + turn, applied, expected);
+            changed += branch.size();
+            gameMap.restore(expected);
+        }
+        System.out.printf("%3dx%-3d prediction matches, %.1f%% of the cells changed per turn%n",
+                width, height, 100.0 * changed / TURNS / (width * height));
+    }
+
+    // two overlays on top of each other, every cell written, then the top one reused after clear
+    private static void checkStacked(int size, Random random) {
+        MapState base = new MapState(size, size, new int[size * size]);
+        for (int i = 0; i < size * size; i++) {
+            base.owners[i] = random.nextInt(PLAYERS + 1);
+            base.strengths[i] = random.nextInt(256);
+        }
+        MapState expected = base.copy();
+
+        MapOverlay lower = new MapOverlay(base);
+        for (int i = 0; i < size * size; i += 3) {
+            lower.set(i, random.nextInt(PLAYERS + 1), random.nextInt(256));
+            expected.owners[i] = lower.owner(i);
+            expected.strengths[i] = lower.strength(i);
+        }
+        MapState afterLower = expected.copy();
+
+        MapOverlay upper = new MapOverlay(lower);
+        for (int i = 0; i < size * size; i++) {
+            upper.set(i, random.nextInt(PLAYERS + 1), random.nextInt(256));
+            expected.owners[i] = upper.owner(i);
+            expected.strengths[i] = upper.strength(i);
+        }
+        if (upper.size() != size * size) {
+            fail("stacked overlay counts " + upper.size() + " changes instead of " + size * size);
+        }
+        if (upper.meanProbes() > MAX_MEAN_PROBES) {
+            fail(String.format("stacked overlay needs %.1f probes per cell, the hash clusters", upper.meanProbes()));
+        }
+        MapState result = new MapState(size, size, base.productions);
+        upper.applyTo(result);
+        compare("stacked " + size + "x" + size, result, expected);
+
+        upper.clear();
+        for (int i = 0; i < size * size; i++) {
+            if (upper.owner(i) != afterLower.owners[i] || upper.strength(i) != afterLower.strengths[i]) {
+                fail("cleared overlay does not fall through at cell " + i);
+                break;
+            }
+        }
+        System.out.printf("%3dx%-3d stacked overlays match%n", size, size);
+    }
+
+    private static void compare(String name, MapState actual, MapState expected) {
+        for (int i = 0; i < expected.owners.length; i++) {
+            if (actual.owners[i] != expected.owners[i] || actual.strengths[i] != expected.strengths[i]) {
+                fail(name + " differs at cell " + i);
+                return;
+            }
+        }
+    }
+
+    private static void fail(String message) {
+        System.out.println("FAILED: " + message);
+        failures++;
+    }
+}
@@ -0,0 +1,38 @@
+// ownership of the whole map as bitboards, rebuilt once per turn; the derived sets are
+// computed with a few word-wide passes instead of looking up every cell's neighbours
+public class OwnerMasks {
+    public final BitBoard mine, enemy, neutral, zeroProduction;
+    // not owned by us but next to one of our locations
+    public final BitBoard frontier;
+    // owned by us and surrounded by our own locations only
+    public final BitBoard interior;
+    // any location next to an enemy location
+    public final BitBoard enemyAdjacent;
+
+    public OwnerMasks(GameMap gameMap, int myID) {
+        mine = new BitBoard(gameMap.width, gameMap.height);
+        enemy = new BitBoard(gameMap.width, gameMap.height);
+        neutral = new BitBoard(gameMap.width, gameMap.height);
+        zeroProduction = new BitBoard(gameMap.width, gameMap.height);
+
+        for (int y = 0; y < gameMap.height; y++) {
+            for (int x = 0; x < gameMap.width; x++) {
+                Site site = gameMap.getLocation(x, y).getSite();
+                if (site.owner == myID) {
+                    mine.set(x, y);
+                } else if (site.owner == 0) {
+                    neutral.set(x, y);
+                } else {
+                    enemy.set(x, y);
+                }
+                if (site.production == 0) {
+                    zeroProduction.set(x, y);
+                }
+            }
+        }
+
+        frontier = mine.adjacent().andNot(mine);
+        interior = mine.and(mine.surrounded());
+        enemyAdjacent = enemy.adjacent();
+    }
+}
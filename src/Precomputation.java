@@ -0,0 +1,6 @@
+// per-turn structure built ahead of time for a predicted frame
+public interface Precomputation {
+    // validates the structure against the frame that actually arrived and patches the
+    // cells that differ; returns false if it cannot be reused and must be rebuilt
+    boolean patch(GameMap gameMap);
+}
@@ -4,17 +4,18 @@ import java.util.List;
 public class RandomBot {
     public static void main(String[] args) throws java.io.IOException {
 
-        final InitPackage iPackage = Networking.getInit();
+        final Networking networking = Networking.STDIO;
+        final InitPackage iPackage = networking.getInit();
         final int myID = iPackage.myID;
         final GameMap gameMap = iPackage.map;
         final int rand = 2;
 
-        Networking.sendInit("RandomJavaBot");
+        networking.sendInit("RandomJavaBot");
 
         while(true) {
             List<Move> moves = new ArrayList<Move>();
 
-            Networking.updateFrame(gameMap);
+            networking.updateFrame(gameMap);
 
             for (int y = 0; y < gameMap.height; y++) {
                 for (int x = 0; x < gameMap.width; x++) {
@@ -25,7 +26,7 @@ public class RandomBot {
                     }
                 }
             }
-            Networking.sendFrame(moves);
+            networking.sendFrame(moves);
         }
     }
 }
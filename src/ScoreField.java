@@ -0,0 +1,220 @@
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+// score of every location on the map: enemy and neutral locations are scored by themselves,
+// owned locations inherit the best score reachable through our territory; owned locations more
+// than radius steps away from the frontier are left unscored
+public class ScoreField implements Precomputation {
+    // radius that scores the whole territory
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private static final double INFINITY = Double.MAX_VALUE;
+    private static final double SCORE_DISTRIBUTION = 0.5;
+    // how much cheaper a location gets when the production around it is the richest on the map
+    private static final double PRODUCTION_INFLUENCE_WEIGHT = 0.5;
+
+    private final int width, height, myID;
+    public final int radius;
+    private final double[] scores;
+    private final boolean[] scored;
+    // the inputs the scores depend on, kept to validate the field against a later frame
+    private final boolean[] owned;
+    private final int[] strengths;
+    private final InfluenceMap productionInfluence;
+    private final float maxProductionInfluence;
+
+    // class used to keep track of territories and how they are scored
+    public static class Territory implements Comparable<Territory> {
+        public double score;
+        public Location location;
+        // all owned frontier locations have friendlyDistance = 1
+        // the deeper the friendly location, the higher the distance
+        public int friendlyDistance;
+
+        public Territory(Location location) {
+            this.location = location;
+            this.score = 0;
+            this.friendlyDistance = 0;
+        }
+
+        @Override
+        public int compareTo(Territory o) {
+            return Double.compare(this.score, o.score);
+        }
+    }
+
+    public ScoreField(GameMap gameMap, int myID, InfluenceMap productionInfluence, int radius) {
+        this.width = gameMap.width;
+        this.height = gameMap.height;
+        this.myID = myID;
+        this.radius = radius;
+        this.scores = new double[width * height];
+        this.scored = new boolean[width * height];
+        this.owned = new boolean[width * height];
+        this.strengths = new int[width * height];
+        this.productionInfluence = productionInfluence;
+        this.maxProductionInfluence = productionInfluence.max();
+
+        Arrays.fill(scores, INFINITY);
+        computeScores(gameMap);
+    }
+
+    public double get(Location location) {
+        return scores[index(location.x, location.y)];
+    }
+
+    // false for owned locations beyond the radius
+    public boolean isScored(Location location) {
+        return scored[index(location.x, location.y)];
+    }
+
+    @Override
+    public boolean patch(GameMap gameMap) {
+        if (gameMap.width != width || gameMap.height != height) {
+            return false;
+        }
+
+        // owned scores only depend on our territory and on the frontier strengths,
+        // any other enemy or neutral location is scored by itself and can be patched
+        List<Integer> changed = new ArrayList<>();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = index(x, y);
+                Site site = gameMap.getLocation(x, y).getSite();
+                if ((site.owner == myID) != owned[i]) {
+                    return false;
+                }
+                if (!owned[i] && site.strength != strengths[i]) {
+                    if (isFrontier(x, y)) {
+                        return false;
+                    }
+                    changed.add(i);
+                }
+            }
+        }
+
+        for (int i : changed) {
+            Location location = gameMap.getLocation(i % width, i / width);
+            strengths[i] = location.getSite().strength;
+            scores[i] = getScore(location);
+        }
+        return true;
+    }
+
+    private void computeScores(GameMap gameMap) {
+        PriorityQueue<Territory> strategicTerritories = new PriorityQueue<>();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                Site site = gameMap.getLocation(x, y).getSite();
+                owned[index(x, y)] = site.owner == myID;
+                strengths[index(x, y)] = site.strength;
+            }
+        }
+
+        // owned locations are skipped, frontier locations are added to the heap for further
+        // processing and all others can not pass their score on, so they are scored right away
+        for (int y = 0; y < height; y++) {
+            checkCancelled();
+            for (int x = 0; x < width; x++) {
+                if (owned[index(x, y)]) {
+                    continue;
+                }
+                Location location = gameMap.getLocation(x, y);
+                if (isFrontier(x, y)) {
+                    Territory territory = new Territory(location);
+                    territory.score = getScore(location);
+                    strategicTerritories.add(territory);
+                } else {
+                    scores[index(x, y)] = getScore(location);
+                    scored[index(x, y)] = true;
+                }
+            }
+        }
+
+        while (!strategicTerritories.isEmpty()) {
+            checkCancelled();
+            Territory territory = strategicTerritories.poll();
+            int i = index(territory.location.x, territory.location.y);
+
+            if (!scored[i]) {
+                // incorporate friendly distance into the score
+                scores[i] = territory.score + territory.friendlyDistance;
+                scored[i] = true;
+                analyzeNeighbours(gameMap, territory, strategicTerritories);
+            }
+        }
+    }
+
+    // a field built speculatively is abandoned as soon as its frame turns out mispredicted, so it
+    // does not compete with the main thread for the rest of the turn
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Score field no longer needed");
+        }
+    }
+
+    private void analyzeNeighbours(GameMap gameMap, Territory territory, PriorityQueue<Territory> strategicTerritories) {
+        for (Direction dir : Direction.DIRECTIONS) {
+            Location neighbour = gameMap.getLocation(territory.location, dir);
+            if (neighbour.getSite().owner != myID || territory.friendlyDistance >= radius) {
+                continue;
+            }
+            Ownership ownership = Ownership.findOwnership(neighbour.getSite().owner, myID);
+            strategicTerritories.add(createNeighbourTerritory(territory, neighbour, ownership));
+        }
+    }
+
+    private Territory createNeighbourTerritory(Territory territory, Location neighbour, Ownership ownership) {
+        Territory neighbourTerritory = new Territory(neighbour);
+        int production = neighbour.getSite().production;
+
+        switch (ownership) {
+            case FRIENDLY:
+                neighbourTerritory.score = territory.score + territory.friendlyDistance + 1;
+                neighbourTerritory.friendlyDistance = territory.friendlyDistance + 1;
+                break;
+
+            case ENEMY:
+                neighbourTerritory.score = INFINITY;
+                neighbourTerritory.friendlyDistance = territory.friendlyDistance;
+                break;
+
+            case NEUTRAL:
+                neighbourTerritory.score = (production == 0) ? INFINITY : weightedScore(neighbour, territory.score);
+                neighbourTerritory.friendlyDistance = territory.friendlyDistance;
+                break;
+
+            default:
+                throw new IllegalArgumentException("Invalid ownership");
+        }
+        return neighbourTerritory;
+    }
+
+    // we modify the score of a location based on the score of its neighbour
+    private double weightedScore(Location loc, double neighScore) {
+        return (1 - SCORE_DISTRIBUTION) * getScore(loc) + SCORE_DISTRIBUTION * neighScore;
+    }
+
+    // computes the score of a location, lowered when the production around it is rich
+    private double getScore(Location location) {
+        Site site = location.getSite();
+        if (site.production == 0) {
+            return INFINITY;
+        } else {
+            double richness = productionInfluence.get(location) / maxProductionInfluence;
+            return (1.0 * site.strength / site.production + 1) / (1 + PRODUCTION_INFLUENCE_WEIGHT * richness);
+        }
+    }
+
+    private boolean isFrontier(int x, int y) {
+        return owned[index(x, (y == 0 ? height : y) - 1)]
+                || owned[index(x == width - 1 ? 0 : x + 1, y)]
+                || owned[index(x, y == height - 1 ? 0 : y + 1)]
+                || owned[index((x == 0 ? width : x) - 1, y)];
+    }
+
+    private int index(int x, int y) {
+        return y * width + x;
+    }
+}
@@ -90,23 +90,38 @@ public class StageOneStrategy extends GameStrategy {
 
             }
 
+            // the nearest boundary with something to produce behind it, and the nearest of any kind
+            // for when every direction is a dead end
             BestMoveTracker tracker = new BestMoveTracker();
+            BestMoveTracker fallback = new BestMoveTracker();
 
             for (Direction dir : Direction.getEastWestDirections()) {
                 Location destination = findFarthestBoundary(location, dir, gameMap.width / 2);
-                tracker.updateMove(location, destination, dir);
+                fallback.updateMove(location, destination, dir);
+                if (!isDeadEnd(destination)) {
+                    tracker.updateMove(location, destination, dir);
+                }
             }
 
             for (Direction dir : Direction.getNorthSouthDirections()) {
                 Location destination = findFarthestBoundary(location, dir, gameMap.height / 2);
-                tracker.updateMove(location, destination, dir);
+                fallback.updateMove(location, destination, dir);
+                if (!isDeadEnd(destination)) {
+                    tracker.updateMove(location, destination, dir);
+                }
             }
 
-            moves.add(new Move(location, tracker.bestMove.dir));
+            Move bestMove = tracker.bestMove != null ? tracker.bestMove : fallback.bestMove;
+            moves.add(new Move(location, bestMove.dir));
             ownedLocations.remove(location);
         }
     }
 
+    // a boundary of a component that produces nothing, like a pocket of barren neutral locations
+    // enclosed by our territory, is not worth walking to
+    private boolean isDeadEnd(Location destination) {
+        return destination.getSite().owner != myID && components.production(components.component(destination)) == 0;
+    }
 
     @Override
     public List<Move> computeBestMoves(GameContext gameContext) {
@@ -116,19 +131,24 @@ public class StageOneStrategy extends GameStrategy {
         ownedLocations = new HashSet<>();
         frontLine = new PriorityQueue<>(new frontLineLocationComparator());
 
-        for (int y = 0; y < gameMap.height; y++) {
-            for (int x = 0; x < gameMap.width; x++) {
-                Location location = gameMap.getLocation(x, y);
-                if (isNeighbour(location) && location.getSite().owner != myID) {
-                    frontLine.add(location);
-                }
+        updateOwnerMasks();
+        updateComponents();
 
-                if (location.getSite().owner == myID) {
-                    ownedLocations.add(location);
-                }
+        BitBoard frontier = ownerMasks.frontier;
+        for (int i = frontier.next(0); i >= 0; i = frontier.next(i + 1)) {
+            frontLine.add(gameMap.getLocation(i % gameMap.width, i / gameMap.width));
+        }
 
-                moveInnerTerritory(location, x, y);
-            }
+        BitBoard mine = ownerMasks.mine;
+        for (int i = mine.next(0); i >= 0; i = mine.next(i + 1)) {
+            ownedLocations.add(gameMap.getLocation(i % gameMap.width, i / gameMap.width));
+        }
+
+        // only the inner territory is moved here, the rest is left to conquer
+        BitBoard interior = ownerMasks.interior;
+        for (int i = interior.next(0); i >= 0; i = interior.next(i + 1)) {
+            int x = i % gameMap.width, y = i / gameMap.width;
+            moveInnerTerritory(gameMap.getLocation(x, y), x, y);
         }
 
         while (!frontLine.isEmpty()) {
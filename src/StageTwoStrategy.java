@@ -1,46 +1,48 @@
 import java.util.*;
+import java.util.concurrent.Callable;
 
 public class StageTwoStrategy extends GameStrategy {
     private static final double ATTACK_BONUS = 20;
     // owned locations on the map ordered by strength -> stronger pieces will be moved first
     private PriorityQueue<Location> ownedLocations;
-    // territories around the map to be processed
-    private PriorityQueue<Territory> strategicTerritories;
     // map between a location and how much power was added to it by a previous move
     private Map<Location, Double> movePlan;
-    // key = location, value = score of the location based on the neighbours and the location itself
-    private Map<Location, Double> locationScoreMap;
-    // unique Random instance
-    private static final Random rand = new Random();
+    // score of every location based on the neighbours and the location itself
+    private ScoreField scoreField;
+    // production spread over the surroundings, built once as productions never change
+    private InfluenceMap productionInfluence;
+    // enemy and our own strength spread over the surroundings
+    private InfluenceMap enemyInfluence;
+    private InfluenceMap friendlyInfluence;
+    // how deep into our territory the score field is propagated
+    private int propagationRadius;
+    // fixed radius, or 0 to pick one from the map size
+    private final int fixedRadius;
+    // coarse view of the map, used to route the owned locations beyond the radius; its blocks are
+    // half the radius across
+    private MapPyramid pyramid;
+    private MapPyramid.Level coarseLevel;
+    private double[] coarseField;
+    // the current frame with the moves assigned so far, other players assumed to stay still
+    private CombatKernel combatKernel;
+    // one per strategy, so games hosted in the same jvm share no state; seeded where a run must
+    // be reproducible
+    private final Random rand;
     // max count of turns
-    private int turnsLeft = 400;
+    private static final int MAX_TURNS = 400;
+    private int turnsLeft;
     // how many turns left are considered endgame
     private static final int ENDGAME_THRESHOLD = 100;
     // factor to decrease the score, so it's more attractive to attack
     private static final double ENDGAME_FACTOR = 0.5;
-
-    // class used to keep track of territories and how they are scored
-    public static class Territory implements Comparable<Territory> {
-        public double score;
-        public Location location;
-        // all owned frontier locations have friendlyDistance = 1
-        // the deeper the friendly location, the higher the distance
-        public int friendlyDistance;
-
-        public Territory(Location location) {
-            this.location = location;
-            this.score = 0;
-            this.friendlyDistance = 0;
-        }
-
-        @Override
-        public int compareTo(Territory o) {
-            return Double.compare(this.score, o.score);
-        }
-    }
+    // how much a location is avoided when the enemy pressure around it is a full piece stronger than ours
+    private static final double THREAT_WEIGHT = 2;
+    // maps larger than this only get the full score field near the frontier
+    private static final int FULL_RESOLUTION_CELLS = 2500;
+    public static final int LARGE_MAP_RADIUS = 16;
 
     // class used to keep track of possible moves
-    public static class MoveCandidate implements Comparable<MoveCandidate> {
+    public class MoveCandidate implements Comparable<MoveCandidate> {
         // location on game map for the future move
         public Location location;
         // direction towards the location
@@ -63,11 +65,25 @@ public class StageTwoStrategy extends GameStrategy {
 
     private static final double INFINITY = Double.MAX_VALUE;
     private static final int MAX_HALITE = 255;
-    private static final double SCORE_DISTRIBUTION = 0.5;
+
+    // picks the radius from the map size
+    public StageTwoStrategy() {
+        this(0);
+    }
+
+    // propagates the score field at most radius steps into our territory
+    public StageTwoStrategy(int radius) {
+        this(radius, new Random());
+    }
+
+    public StageTwoStrategy(int radius, Random rand) {
+        this.fixedRadius = radius;
+        this.rand = rand;
+    }
 
     @Override
     public List<Move> computeBestMoves(GameContext gameContext) {
-        --turnsLeft;
+        turnsLeft = MAX_TURNS - gameContext.turn;
 
         gameMap = gameContext.gameMap;
         myID = gameContext.myID;
@@ -75,18 +91,22 @@ public class StageTwoStrategy extends GameStrategy {
         // set up
         moves = new ArrayList<>();
         ownedLocations = new PriorityQueue<Location>((a, b) -> -Double.compare(a.getSite().strength, b.getSite().strength));
-        locationScoreMap = new HashMap<>();
-        strategicTerritories = new PriorityQueue<Territory>();
         movePlan = new HashMap<>();
 
-
         initialize();
-        computeScores();
+        // reuse the field built while waiting for this frame, if it was validated
+        if (precomputed instanceof ScoreField && ((ScoreField) precomputed).radius == propagationRadius) {
+            scoreField = (ScoreField) precomputed;
+        } else {
+            scoreField = new ScoreField(gameMap, myID, productionInfluence, propagationRadius);
+        }
+        precomputed = null;
 
         // move all owned locations starting from stronger to weaker
         while (!ownedLocations.isEmpty()) {
             Location location = ownedLocations.poll();
             Direction moveDir = assignMove(location);
+            combatKernel.setMove(combatKernel.index(location), moveDir);
             Location target = gameMap.getLocation(location, moveDir);
             // we save our move in the move location plan
             movePlan.put(target, movePlan.getOrDefault(target, 0.0) + location.getSite().strength);
@@ -94,92 +114,114 @@ public class StageTwoStrategy extends GameStrategy {
         return moves;
     }
 
+    @Override
+    public Callable<Precomputation> precompute(GameContext predictedContext) {
+        final InfluenceMap production = productionInfluence;
+        final int radius = propagationRadius;
+        return () -> new ScoreField(predictedContext.gameMap, predictedContext.myID, production, radius);
+    }
 
-    private void computeScores() {
-        while (locationScoreMap.size() < gameMap.width * gameMap.height) {
-            Territory territory = strategicTerritories.poll();
+    // all owned locations are added to the heap to be moved
+    private void initialize() {
+        updateOwnerMasks();
+        combatKernel = new CombatKernel(gameMap);
 
-            assert territory != null;
-            if (!locationScoreMap.containsKey(territory.location)) {
-                updateScoreMap(territory);
-                analyzeNeighbours(territory);
-            }
+        if (productionInfluence == null) {
+            productionInfluence = InfluenceMap.of(gameMap, site -> site.production);
         }
-    }
-
-    private void updateScoreMap(Territory territory) {
-        // Incorporate friendly distance into the score and update the map
-        double updatedScore = territory.score + territory.friendlyDistance;
-        locationScoreMap.put(territory.location, updatedScore);
-    }
+        enemyInfluence = InfluenceMap.of(gameMap, site -> site.owner != 0 && site.owner != myID ? site.strength : 0);
+        friendlyInfluence = InfluenceMap.of(gameMap, site -> site.owner == myID ? site.strength : 0);
 
-    private void analyzeNeighbours(Territory territory) {
-        for (Location neighbour : getNeighbours(territory.location)) {
-            int owner = neighbour.getSite().owner;
-            Ownership ownership = Ownership.findOwnership(owner, myID);
-            Territory neighbourTerritory = createNeighbourTerritory(territory, neighbour, ownership);
+        if (fixedRadius > 0) {
+            propagationRadius = fixedRadius;
+        } else {
+            propagationRadius = gameMap.width * gameMap.height > FULL_RESOLUTION_CELLS ? LARGE_MAP_RADIUS : ScoreField.UNBOUNDED;
+        }
+        if (propagationRadius != ScoreField.UNBOUNDED) {
+            if (pyramid == null) {
+                pyramid = new MapPyramid(gameMap, myID, coarseBlockSize());
+            } else {
+                pyramid.update(gameMap);
+            }
+            computeCoarseField();
+        }
 
-            strategicTerritories.add(neighbourTerritory);
+        BitBoard mine = ownerMasks.mine;
+        for (int i = mine.next(0); i >= 0; i = mine.next(i + 1)) {
+            ownedLocations.add(gameMap.getLocation(i % gameMap.width, i / gameMap.width));
         }
     }
 
-    private Territory createNeighbourTerritory(Territory territory, Location neighbour, Ownership ownership) {
-        Territory neighbourTerritory = new Territory(neighbour);
-        int production = neighbour.getSite().production;
-
-        switch (ownership) {
-            case FRIENDLY:
-                neighbourTerritory.score = territory.score + territory.friendlyDistance + 1;
-                neighbourTerritory.friendlyDistance = territory.friendlyDistance + 1;
-                break;
-
-            case ENEMY:
-                neighbourTerritory.score = INFINITY;
-                neighbourTerritory.friendlyDistance = territory.friendlyDistance;
-                break;
-
-            case NEUTRAL:
-                neighbourTerritory.score = (production == 0) ? INFINITY : weightedScore(neighbour, territory.score);
-                neighbourTerritory.friendlyDistance = territory.friendlyDistance;
-                break;
+    // scores every block by its own open locations, or by the best block reachable from it
+    private void computeCoarseField() {
+        coarseLevel = pyramid.level(coarseBlockSize());
+        coarseField = new double[coarseLevel.columns * coarseLevel.rows];
+        // entries are {score, block}, outdated entries are skipped when polled
+        PriorityQueue<double[]> blocks = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+
+        for (int block = 0; block < coarseField.length; block++) {
+            int production = coarseLevel.openProduction[block];
+            coarseField[block] = production == 0 ? INFINITY : 1.0 * coarseLevel.openStrength[block] / production + 1;
+            if (coarseField[block] < INFINITY) {
+                blocks.add(new double[]{coarseField[block], block});
+            }
+        }
 
-            default:
-                throw new IllegalArgumentException("Invalid ownership");
+        while (!blocks.isEmpty()) {
+            double[] entry = blocks.poll();
+            int block = (int) entry[1];
+            if (entry[0] > coarseField[block]) {
+                continue;
+            }
+            for (Direction dir : Direction.CARDINALS) {
+                int neighbour = coarseLevel.neighbour(block, dir);
+                double score = entry[0] + coarseLevel.blockSize;
+                if (score < coarseField[neighbour]) {
+                    coarseField[neighbour] = score;
+                    blocks.add(new double[]{score, neighbour});
+                }
+            }
         }
-        return neighbourTerritory;
     }
 
-    // we modify the score of a location based on the score of its neighbour
-    private double weightedScore(Location loc, double neighScore) {
-        return (1 - SCORE_DISTRIBUTION) * getScore(loc) + SCORE_DISTRIBUTION * neighScore;
+    private int coarseBlockSize() {
+        return Math.max(1, propagationRadius / 2);
     }
 
-    // computes the score of a location
-    private double getScore(Location location) {
-        if (location.getSite().production == 0) {
-            return INFINITY;
-        } else {
-            return 1.0 * location.getSite().strength / location.getSite().production + 1;
-        }
-    }
+    // owned locations beyond the radius head for the neighbouring block with the best coarse score
+    private Direction assignCoarseMove(Location myLocation) {
+        Site mySite = myLocation.getSite();
+        boolean isMoveNeeded = (mySite.strength + mySite.production
+                + movePlan.getOrDefault(myLocation, 0.0) > MAX_HALITE);
 
-    // all owned locations are added to a set, and all others to the heap for further processing
-    private void initialize() {
-        for (int y = 0; y < gameMap.height; y++) {
-            for (int x = 0; x < gameMap.width; x++) {
-                if (gameMap.getLocation(x, y).getSite().owner == myID) {
-                    ownedLocations.add(gameMap.getLocation(x, y));
-                } else {
-                    Territory territory = new Territory(gameMap.getLocation(x, y));
-                    territory.score = getScore(territory.location);
-                    strategicTerritories.add(territory);
-                }
+        int block = coarseLevel.block(myLocation.x, myLocation.y);
+        Direction direction = Direction.STILL;
+        double bestScore = INFINITY;
+        for (Direction dir : Direction.CARDINALS) {
+            double score = coarseField[coarseLevel.neighbour(block, dir)];
+            if (score < bestScore) {
+                bestScore = score;
+                direction = dir;
             }
+        }
 
+        Location target = gameMap.getLocation(myLocation, direction);
+        boolean canMove = direction != Direction.STILL
+                && movePlan.getOrDefault(target, 0.0) + mySite.strength <= MAX_HALITE;
+        if (canMove && (isMoveNeeded || (!isPartOfThePlan(myLocation) && isStrongEnoughToMove(mySite)))) {
+            moves.add(new Move(myLocation, direction));
+            return direction;
         }
+
+        moves.add(new Move(myLocation, Direction.STILL));
+        return Direction.STILL;
     }
 
     private Direction assignMove(Location myLocation) {
+        if (propagationRadius != ScoreField.UNBOUNDED && !scoreField.isScored(myLocation)) {
+            return assignCoarseMove(myLocation);
+        }
+
         // if location's strength + production + strength assigned to it by other moves
         // is over the limit, we must move to not waste halite
         Site mySite = myLocation.getSite();
@@ -222,10 +264,8 @@ public class StageTwoStrategy extends GameStrategy {
         }
 
         // we do not necessarily need to move, however attack if possible
-        Site bestMoveSite = bestMove.location.getSite();
-
         // if our best option is an opponent attack if it can be conquered
-        if (isAttackOpportunity(bestMoveSite, mySite)) {
+        if (isAttackOpportunity(myLocation, bestMove)) {
             moves.add(new Move(myLocation, bestMove.direction));
             return bestMove.direction;
         }
@@ -253,11 +293,11 @@ public class StageTwoStrategy extends GameStrategy {
             if (isEndgame()) {
                 // Calculate a more dynamic score based on endgame strategy
                 // Higher scores for attacking weak enemies or closing gaps
-                moveCandidate.score = calculateEndgameScore(neighbour, myLocation);
+                moveCandidate.score = calculateEndgameScore(myLocation, dir, neighbour);
             } else if (movePlan.getOrDefault(neighbour, 0.0) + myLocation.getSite().strength > MAX_HALITE) {
                 moveCandidate.score = INFINITY;
             } else {
-                moveCandidate.score = locationScoreMap.get(neighbour);
+                moveCandidate.score = scoreField.get(neighbour) + threat(neighbour);
             }
 
             moveCandidates.add(moveCandidate);
@@ -270,24 +310,39 @@ public class StageTwoStrategy extends GameStrategy {
         return turnsLeft < ENDGAME_THRESHOLD;
     }
 
-    private double calculateEndgameScore(Location neighbour, Location myLocation) {
-        double baseScore = locationScoreMap.getOrDefault(neighbour, 0.0);
+    private double calculateEndgameScore(Location myLocation, Direction dir, Location neighbour) {
+        double baseScore = scoreField.get(neighbour);
         Site neighbourSite = neighbour.getSite();
 
-        if (neighbourSite.owner == 0 || neighbourSite.strength < myLocation.getSite().strength) {
+        boolean isGain = neighbourSite.owner == myID
+                ? neighbourSite.strength < myLocation.getSite().strength
+                : neighbourSite.owner == 0 || isCapture(myLocation, dir, neighbour);
+        if (isGain) {
             // Prioritize attacking or filling gaps
             return baseScore * ENDGAME_FACTOR; // Decrease score to make these moves more attractive
         }
         return baseScore;
     }
 
+    // enemy pressure around a location that our own pieces nearby do not make up for
+    private double threat(Location location) {
+        double pressure = enemyInfluence.get(location) - friendlyInfluence.get(location);
+        return THREAT_WEIGHT * Math.max(0, pressure) / MAX_HALITE;
+    }
+
     private boolean isPartOfThePlan(Location loc) {
         return movePlan.getOrDefault(loc, 0.0) > 0.0;
     }
 
-    private boolean isAttackOpportunity(Site targetSite, Site mySite) {
-        return targetSite.owner != myID &&
-                (mySite.strength == MAX_HALITE || mySite.strength > targetSite.strength);
+    private boolean isAttackOpportunity(Location myLocation, MoveCandidate bestMove) {
+        return bestMove.location.getSite().owner != myID
+                && isCapture(myLocation, bestMove.direction, bestMove.location);
+    }
+
+    // whether the target is ours after the frame if we move there, counting the merges with the
+    // moves assigned so far and the damage from every enemy piece around it
+    private boolean isCapture(Location myLocation, Direction dir, Location target) {
+        return combatKernel.predictOwner(combatKernel.index(myLocation), dir, combatKernel.index(target)) == myID;
     }
 
     private boolean isStrongEnoughToMove(Site mySite) {
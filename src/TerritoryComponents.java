@@ -0,0 +1,274 @@
+import java.util.*;
+
+// connected components of every owner's locations, neutral included (4-neighbour, wrapping around),
+// kept up to date across turns from the locations the map reports as changed: gained locations are merged
+// with union-find, lost ones are taken out of their component and the component is only labelled
+// again when the loss may have split it; size, strength and production are kept on the roots
+public class TerritoryComponents {
+    // the ring around a location starting north, clockwise; even positions are the direct neighbours
+    private static final int[][] RING_OFFSETS = {{0, -1}, {1, -1}, {1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}};
+
+    public final int width, height;
+    private final int[] productions;
+    // owner and strength of every location as of the last update
+    private final int[] owners, strengths;
+    // the union-find node of every location
+    private final int[] cellNodes;
+    // which places of the ring around the location being removed keep its owner, reused by every call
+    private final boolean[] ring = new boolean[RING_OFFSETS.length];
+    // the map update the components reflect
+    private long updates;
+
+    // union-find nodes; a node is dead once its location left the component, it stays in the tree
+    // so the paths through it keep working until the nodes are compacted
+    private int[] parents, nodeCells, nextNodes, sizes, nodeOwners;
+    private long[] nodeStrengths, nodeProductions;
+    private int nodeCount;
+
+    public TerritoryComponents(GameMap gameMap) {
+        this.width = gameMap.width;
+        this.height = gameMap.height;
+        this.productions = new int[width * height];
+        this.owners = new int[width * height];
+        this.strengths = new int[width * height];
+        this.cellNodes = new int[width * height];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                productions[y * width + x] = gameMap.getLocation(x, y).getSite().production;
+            }
+        }
+        rebuild(gameMap);
+    }
+
+    // the component of a location, identified by its root node
+    public int component(int x, int y) {
+        return find(cellNodes[y * width + x]);
+    }
+
+    public int component(Location location) {
+        return component(location.x, location.y);
+    }
+
+    public int owner(int component) {
+        return nodeOwners[component];
+    }
+
+    public int size(int component) {
+        return sizes[component];
+    }
+
+    public long strength(int component) {
+        return nodeStrengths[component];
+    }
+
+    public long production(int component) {
+        return nodeProductions[component];
+    }
+
+    // applies the locations changed since the last update; the map only lists the changes of its
+    // latest update, so when more than one update was missed every location is compared instead
+    public void update(GameMap gameMap) {
+        if (gameMap.updates() == updates) {
+            return;
+        }
+        // dead nodes pile up with every change, start over once they outnumber the live ones;
+        // one update adds at most two nodes per location, so the capacity always suffices
+        if (nodeCount > 3 * owners.length) {
+            rebuild(gameMap);
+            return;
+        }
+
+        List<Integer> changed = new ArrayList<>();
+        Set<Integer> splitCandidates = new HashSet<>();
+        if (gameMap.updates() == updates + 1) {
+            for (int k = 0; k < gameMap.changedCount(); k++) {
+                compare(gameMap, gameMap.changedCell(k), changed);
+            }
+        } else {
+            for (int i = 0; i < owners.length; i++) {
+                compare(gameMap, i, changed);
+            }
+        }
+        updates = gameMap.updates();
+
+        // take the changed locations out while the old owners are still known
+        for (int i : changed) {
+            int root = find(cellNodes[i]);
+            sizes[root]--;
+            nodeStrengths[root] -= strengths[i];
+            nodeProductions[root] -= productions[i];
+            nodeCells[cellNodes[i]] = -1;
+            if (mightSplit(gameMap, i)) {
+                splitCandidates.add(root);
+            }
+        }
+
+        for (int i : changed) {
+            Site site = gameMap.getLocation(i % width, i / width).getSite();
+            owners[i] = site.owner;
+            strengths[i] = site.strength;
+            cellNodes[i] = newNode(i);
+        }
+        for (int i : changed) {
+            joinNeighbours(i);
+        }
+
+        for (int candidate : splitCandidates) {
+            relabel(find(candidate));
+        }
+    }
+
+    // collects the location if its owner changed, otherwise moves its strength change onto its component
+    private void compare(GameMap gameMap, int cell, List<Integer> changed) {
+        Site site = gameMap.getLocation(cell % width, cell / width).getSite();
+        if (site.owner != owners[cell]) {
+            changed.add(cell);
+        } else if (site.strength != strengths[cell]) {
+            nodeStrengths[find(cellNodes[cell])] += site.strength - strengths[cell];
+            strengths[cell] = site.strength;
+        }
+    }
+
+    // whether removing the location may disconnect what is left of its component: it may not if every
+    // neighbour of the old owner keeps that owner and they all stay connected through the ring around it
+    private boolean mightSplit(GameMap gameMap, int cell) {
+        int x = cell % width, y = cell / width;
+        int owner = owners[cell];
+        int neighbours = 0;
+        for (int k = 0; k < 8; k++) {
+            int nx = Math.floorMod(x + RING_OFFSETS[k][0], width), ny = Math.floorMod(y + RING_OFFSETS[k][1], height);
+            boolean wasSame = owners[ny * width + nx] == owner;
+            ring[k] = wasSame && gameMap.getLocation(nx, ny).getSite().owner == owner;
+            if (k % 2 == 0 && wasSame) {
+                if (!ring[k]) {
+                    return true;
+                }
+                neighbours++;
+            }
+        }
+        if (neighbours <= 1) {
+            return false;
+        }
+
+        // count the runs of the ring that hold a direct neighbour
+        int start = 0;
+        while (start < 8 && ring[start]) {
+            start++;
+        }
+        if (start == 8) {
+            return false;
+        }
+        int groups = 0;
+        boolean inRun = false, runHasNeighbour = false;
+        for (int step = 1; step <= 8; step++) {
+            int k = (start + step) % 8;
+            if (ring[k]) {
+                inRun = true;
+                runHasNeighbour |= k % 2 == 0;
+            } else if (inRun) {
+                groups += runHasNeighbour ? 1 : 0;
+                inRun = false;
+                runHasNeighbour = false;
+            }
+        }
+        return groups > 1;
+    }
+
+    // labels the live locations of a component again from scratch
+    private void relabel(int root) {
+        List<Integer> cells = new ArrayList<>();
+        int node = root;
+        do {
+            if (nodeCells[node] >= 0) {
+                cells.add(nodeCells[node]);
+                nodeCells[node] = -1;
+            }
+            node = nextNodes[node];
+        } while (node != root);
+
+        for (int i : cells) {
+            cellNodes[i] = newNode(i);
+        }
+        for (int i : cells) {
+            joinNeighbours(i);
+        }
+    }
+
+    private void rebuild(GameMap gameMap) {
+        int capacity = 6 * owners.length;
+        parents = new int[capacity];
+        nodeCells = new int[capacity];
+        nextNodes = new int[capacity];
+        sizes = new int[capacity];
+        nodeOwners = new int[capacity];
+        nodeStrengths = new long[capacity];
+        nodeProductions = new long[capacity];
+        nodeCount = 0;
+        updates = gameMap.updates();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                Site site = gameMap.getLocation(x, y).getSite();
+                owners[i] = site.owner;
+                strengths[i] = site.strength;
+                cellNodes[i] = newNode(i);
+            }
+        }
+        for (int i = 0; i < owners.length; i++) {
+            joinNeighbours(i);
+        }
+    }
+
+    private int newNode(int cell) {
+        int node = nodeCount++;
+        parents[node] = node;
+        nodeCells[node] = cell;
+        nextNodes[node] = node;
+        sizes[node] = 1;
+        nodeOwners[node] = owners[cell];
+        nodeStrengths[node] = strengths[cell];
+        nodeProductions[node] = productions[cell];
+        return node;
+    }
+
+    private void joinNeighbours(int cell) {
+        int x = cell % width, y = cell / width;
+        union(cell, (y == 0 ? height - 1 : y - 1) * width + x);
+        union(cell, y * width + (x == width - 1 ? 0 : x + 1));
+        union(cell, (y == height - 1 ? 0 : y + 1) * width + x);
+        union(cell, y * width + (x == 0 ? width - 1 : x - 1));
+    }
+
+    private void union(int cell, int other) {
+        if (owners[cell] != owners[other]) {
+            return;
+        }
+        int a = find(cellNodes[cell]), b = find(cellNodes[other]);
+        if (a == b) {
+            return;
+        }
+        if (sizes[a] < sizes[b]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        parents[b] = a;
+        sizes[a] += sizes[b];
+        nodeStrengths[a] += nodeStrengths[b];
+        nodeProductions[a] += nodeProductions[b];
+        // splice the two circular member lists
+        int next = nextNodes[a];
+        nextNodes[a] = nextNodes[b];
+        nextNodes[b] = next;
+    }
+
+    private int find(int node) {
+        while (parents[node] != node) {
+            parents[node] = parents[parents[node]];
+            node = parents[node];
+        }
+        return node;
+    }
+}